@@ -1,7 +1,6 @@
 package com.splunk.splunkjenkins;
 
 import com.cloudbees.workflow.rest.external.*;
-import com.splunk.splunkjenkins.console.SplunkTaskListenerFactory;
 import com.splunk.splunkjenkins.model.LoggingJobExtractor;
 import hudson.Extension;
 import hudson.model.Result;
@@ -51,7 +50,6 @@ public class PipelineRunSupport extends LoggingJobExtractor<WorkflowRun> {
                     info.put("stages", labeledStages);
                 }
             }
-            SplunkTaskListenerFactory.removeCache(workflowRun);
         }
         return info;
     }
@@ -338,7 +338,7 @@ public class SplunkConsoleLogStep extends Step {
      * <h2>Log Flush Process</h2>
      * <p>The flush process:</p>
      * <ol>
-     *     <li>Drains all cached records from the queue</li>
+     *     <li>Drains the cached records of the run from the queue</li>
      *     <li>Sends them as a batch to Splunk</li>
      *     <li>Logs errors but does not fail the pipeline</li>
      * </ol>
@@ -354,7 +354,7 @@ public class SplunkConsoleLogStep extends Step {
      * structure changes.</p>
      *
      * @see BodyExecutionCallback
-     * @see ConsoleRecordCacheUtils#flushLog()
+     * @see ConsoleRecordCacheUtils#flushLog(String)
      */
     public static class BodyExecutionCallbackConsole extends BodyExecutionCallback.TailCall {
         private static final long serialVersionUID = 1L;
@@ -363,15 +363,20 @@ public class SplunkConsoleLogStep extends Step {
          * Flushes cached console logs to Splunk when the step completes.
          *
          * <p>This method is automatically invoked by Jenkins when the step's body block
-         * finishes execution. It delegates to {@link ConsoleRecordCacheUtils#flushLog()}
-         * to drain the queue and send any pending records to Splunk.</p>
+         * finishes execution. It delegates to {@link ConsoleRecordCacheUtils#flushLog(String)}
+         * to drain the queue of the run and send its pending records to Splunk.</p>
          *
          * @param stepContext the context for the completed step
          * @throws Exception if an error occurs during log flushing (logged but does not fail the step)
          */
         @Override
         protected void finished(StepContext stepContext) throws Exception {
-            ConsoleRecordCacheUtils.flushLog();
+            Run run = stepContext.get(Run.class);
+            if (run instanceof WorkflowRun) {
+                ConsoleRecordCacheUtils.flushLog(SplunkConsoleTaskListenerDecorator.getSource((WorkflowRun) run));
+            } else {
+                ConsoleRecordCacheUtils.flushLog();
+            }
         }
     }
 }
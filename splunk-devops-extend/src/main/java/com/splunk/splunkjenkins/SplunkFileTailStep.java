@@ -0,0 +1,285 @@
+package com.splunk.splunkjenkins;
+
+import com.google.common.collect.ImmutableSet;
+import com.splunk.splunkjenkins.model.EventType;
+import com.splunk.splunkjenkins.utils.FileTailCallable;
+import com.splunk.splunkjenkins.utils.SplunkLogService;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pipeline block step that sends the lines appended to workspace files to Splunk while the block is running.
+ *
+ * <pre>{@code
+ * node {
+ *     sendSplunkFileTail(includes: 'logs/*.log', interval: 10) {
+ *         sh './run-integration-tests.sh'
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>The files are read on the node which owns the workspace, every {@code interval} seconds
+ * the bytes appended since the last read are sent. A file is read from the start again if it was
+ * rotated or truncated. When the block exits, the rest of the files including incomplete lines is sent.</p>
+ *
+ * @see FileTailCallable
+ * @since 1.11.3
+ */
+public class SplunkFileTailStep extends Step {
+    /**
+     * Max bytes read from the workspace in one interval.
+     */
+    private static final long MAX_BYTES_PER_READ = Long.getLong(SplunkFileTailStep.class.getName() + ".maxBytesPerRead", 4L << 20);
+    /**
+     * Max reads for the final flush, each read returns at most {@link #MAX_BYTES_PER_READ}.
+     */
+    private static final int MAX_FINAL_READS = Integer.getInteger(SplunkFileTailStep.class.getName() + ".maxFinalReads", 64);
+    /**
+     * Threads reading the workspaces, the reads block on remoting calls so they do not run on the shared Jenkins timer.
+     */
+    private static final int THREADS = Math.max(1, Integer.getInteger(SplunkFileTailStep.class.getName() + ".threads", 2));
+    private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(THREADS,
+            new NamingThreadFactory(new DaemonThreadFactory(), "splunkins-file-tail"));
+    private static final Logger LOG = Logger.getLogger(SplunkFileTailStep.class.getName());
+
+    static {
+        EXECUTOR.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Ant-style pattern to match files to tail.
+     */
+    private final String includes;
+    /**
+     * Ant-style pattern to exclude files.
+     */
+    private String excludes;
+    /**
+     * Seconds between two reads.
+     */
+    private int interval = 10;
+
+    @DataBoundConstructor
+    public SplunkFileTailStep(@NonNull String includes) {
+        this.includes = includes;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new FileTailExecution(context, includes, excludes, interval);
+    }
+
+    public String getIncludes() {
+        return includes;
+    }
+
+    public String getExcludes() {
+        return excludes;
+    }
+
+    @DataBoundSetter
+    public void setExcludes(String excludes) {
+        this.excludes = excludes;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    @DataBoundSetter
+    public void setInterval(int interval) {
+        this.interval = interval;
+    }
+
+    @Extension(optional = true)
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(Run.class, TaskListener.class, FilePath.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "sendSplunkFileTail";
+        }
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Send files to Splunk while they are written";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return true;
+        }
+    }
+
+    /**
+     * Runs the block and reads the files periodically until the block exits.
+     */
+    public static class FileTailExecution extends StepExecution {
+        private static final long serialVersionUID = 1L;
+        private final String includes;
+        private final String excludes;
+        private final int interval;
+        // offsets of the files, keyed by path relative to the workspace
+        private Map<String, FileTailCallable.TailOffset> offsets = new HashMap<>();
+        private transient ScheduledFuture<?> tailTask;
+
+        FileTailExecution(StepContext context, String includes, String excludes, int interval) {
+            super(context);
+            this.includes = includes;
+            this.excludes = excludes;
+            this.interval = Math.max(1, interval);
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            StepContext context = getContext();
+            if (!SplunkJenkinsInstallation.get().isEnabled()) {
+                context.newBodyInvoker().withCallback(BodyExecutionCallback.wrap(context)).start();
+                return false;
+            }
+            context.newBodyInvoker().withCallback(new TailCallback(this)).start();
+            schedule();
+            return false;
+        }
+
+        @Override
+        public void onResume() {
+            if (SplunkJenkinsInstallation.get().isEnabled()) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void stop(@NonNull Throwable cause) throws Exception {
+            cancel();
+            getContext().onFailure(cause);
+        }
+
+        private synchronized void schedule() {
+            tailTask = EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        read(false);
+                    } catch (IOException e) {
+                        LOG.log(Level.WARNING, "failed to tail files " + includes, e);
+                    } catch (InterruptedException e) {
+                        LOG.log(Level.FINE, "tailing files was interrupted", e);
+                    }
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+
+        private synchronized void cancel() {
+            if (tailTask != null) {
+                tailTask.cancel(false);
+                tailTask = null;
+            }
+        }
+
+        /**
+         * Sends the content appended since last read
+         *
+         * @param finalRead whether the incomplete lines are sent too
+         * @return true if some content was left because of the byte limit
+         */
+        private synchronized boolean read(boolean finalRead) throws IOException, InterruptedException {
+            FilePath workspace = getContext().get(FilePath.class);
+            Run run = getContext().get(Run.class);
+            if (workspace == null || run == null) {
+                return false;
+            }
+            FileTailCallable.Result result = workspace.act(new FileTailCallable(includes, excludes, offsets, MAX_BYTES_PER_READ, finalRead));
+            for (FileTailCallable.Chunk chunk : result.getChunks()) {
+                SplunkLogService.getInstance().send(chunk.getContent(), EventType.FILE, run.getUrl() + chunk.getPath());
+            }
+            offsets = new HashMap<>(result.getOffsets());
+            return result.hasMore();
+        }
+
+        /**
+         * Stops the periodic read and sends the rest of the files, then completes the step
+         *
+         * @param completion the callback to complete the step
+         */
+        void finish(final Runnable completion) {
+            cancel();
+            EXECUTOR.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int reads = 0;
+                        while (read(true) && ++reads < MAX_FINAL_READS) {
+                            LOG.log(Level.FINE, "sending rest of files {0}", includes);
+                        }
+                    } catch (IOException e) {
+                        LOG.log(Level.WARNING, "failed to send rest of files " + includes, e);
+                    } catch (InterruptedException e) {
+                        LOG.log(Level.FINE, "sending rest of files was interrupted", e);
+                    } finally {
+                        completion.run();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends the rest of the files once the block exits, then completes the step with the block result.
+     */
+    private static class TailCallback extends BodyExecutionCallback {
+        private static final long serialVersionUID = 1L;
+        private final FileTailExecution execution;
+
+        TailCallback(FileTailExecution execution) {
+            this.execution = execution;
+        }
+
+        @Override
+        public void onSuccess(final StepContext context, final Object result) {
+            execution.finish(new Runnable() {
+                @Override
+                public void run() {
+                    context.onSuccess(result);
+                }
+            });
+        }
+
+        @Override
+        public void onFailure(final StepContext context, final Throwable t) {
+            execution.finish(new Runnable() {
+                @Override
+                public void run() {
+                    context.onFailure(t);
+                }
+            });
+        }
+    }
+}
@@ -1,48 +1,157 @@
 package com.splunk.splunkjenkins.console;
 
+import com.splunk.splunkjenkins.SplunkJenkinsInstallation;
 import com.splunk.splunkjenkins.model.EventRecord;
 import com.splunk.splunkjenkins.model.EventType;
+import com.splunk.splunkjenkins.utils.RemoteUtils;
 import com.splunk.splunkjenkins.utils.SplunkLogService;
+import hudson.Util;
 import jenkins.util.JenkinsJVM;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Buffers pipeline console records per source (one source per run), a source is flushed
+ * when its buffer exceeds the max batch bytes, when the max latency elapsed since the first
+ * buffered record, or explicitly when the step or the run is completed.
+ */
 public class ConsoleRecordCacheUtils {
-    private static final int CACHED_LINES_LIMIT;
+    private static final String PROPERTY_PREFIX = ConsoleRecordCacheUtils.class.getName();
+    // agents linger a bit longer to batch chatty steps into fewer requests
+    private static final long MAX_LATENCY_MILLIS = Math.max(100, Long.getLong(PROPERTY_PREFIX + ".maxLatency",
+            JenkinsJVM.isJenkinsJVM() ? 2000 : 3000));
+    // 0 means use maxEventsBatchSize of the global config, which is also passed to agents
+    private static final long MAX_BATCH_BYTES = Long.getLong(PROPERTY_PREFIX + ".maxBatchBytes", 0);
     private transient static final Logger LOGGER = Logger.getLogger(SplunkConsoleTaskListenerDecorator.class.getName());
-    private transient static final ConcurrentLinkedQueue<EventRecord> consoleQueue = new ConcurrentLinkedQueue<>();
+    private transient static final ConcurrentHashMap<String, SourceBuffer> buffers = new ConcurrentHashMap<>();
+    private transient static final FlushTimerWheel<String> flushTimer = new FlushTimerWheel<>("splunkins-console-flush",
+            MAX_LATENCY_MILLIS, new FlushTimerWheel.Callback<String>() {
+        @Override
+        public void expired(String source) {
+            flushLog(source);
+        }
+    });
 
     static {
-        if (JenkinsJVM.isJenkinsJVM()) {
-            CACHED_LINES_LIMIT = 200;
-        } else {
-            CACHED_LINES_LIMIT = 10;
+        if (!JenkinsJVM.isJenkinsJVM()) {
+            // send buffered records before the agent queue is drained
+            RemoteUtils.addAgentFlushTask(new Runnable() {
+                @Override
+                public void run() {
+                    flushLog();
+                }
+            });
         }
     }
 
     public static void enqueue(EventRecord record) {
-        boolean added = consoleQueue.add(record);
-        if (!added) {
-            LOGGER.warning("failed to add log " + record.getMessageString());
-        } else if (consoleQueue.size() > CACHED_LINES_LIMIT) {
-            flushLog();
+        String source = Util.fixNull(record.getSource());
+        int result;
+        do {
+            SourceBuffer buffer = buffers.get(source);
+            if (buffer == null) {
+                buffer = new SourceBuffer(getMaxBatchBytes());
+                SourceBuffer previous = buffers.putIfAbsent(source, buffer);
+                if (previous != null) {
+                    buffer = previous;
+                }
+            }
+            // buffer is retired if it was flushed concurrently, retry with a new one
+            result = buffer.add(record);
+        } while (result == SourceBuffer.RETIRED);
+        if (result == SourceBuffer.FULL) {
+            flushLog(source);
+        } else if (result == SourceBuffer.FIRST) {
+            flushTimer.schedule(source);
         }
     }
 
-    public static void flushLog() {
-        EventRecord record;
-        List<EventRecord> pendingRecords = new ArrayList<>();
+    /**
+     * flush the records of one source, typically the console of one run
+     *
+     * @param source the source of the console records
+     */
+    public static void flushLog(String source) {
+        SourceBuffer buffer = buffers.remove(Util.fixNull(source));
+        if (buffer == null) {
+            return;
+        }
+        List<EventRecord> pendingRecords = buffer.retire();
+        if (pendingRecords.isEmpty()) {
+            return;
+        }
         try {
-            while ((record = consoleQueue.poll()) != null) {
-                pendingRecords.add(record);
-            }
             SplunkLogService.getInstance().sendBatch(pendingRecords, EventType.CONSOLE_LOG);
         } catch (Throwable ex) {
             LOGGER.log(Level.SEVERE, "flush log error", ex);
         }
     }
+
+    /**
+     * flush the records of all sources
+     */
+    public static void flushLog() {
+        for (String source : Collections.list(buffers.keys())) {
+            flushLog(source);
+        }
+    }
+
+    /**
+     * @return max milliseconds a console record is held before it is sent
+     */
+    static long getMaxLatencyMillis() {
+        return MAX_LATENCY_MILLIS;
+    }
+
+    private static long getMaxBatchBytes() {
+        if (MAX_BATCH_BYTES > 0) {
+            return MAX_BATCH_BYTES;
+        }
+        return SplunkJenkinsInstallation.get().getMaxEventsBatchSize();
+    }
+
+    static class SourceBuffer {
+        static final int RETIRED = -1;
+        static final int BUFFERED = 0;
+        // the first record of the buffer, the latency timer need be scheduled
+        static final int FIRST = 1;
+        // the buffer exceeds the max batch bytes and need be flushed
+        static final int FULL = 2;
+        private final List<EventRecord> records = new ArrayList<>();
+        // read once per buffer instead of per line
+        private final long maxBytes;
+        private long bytes = 0;
+        private boolean retired = false;
+
+        SourceBuffer(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * @param record the record to buffer, the lines of a multi-line event are merged by the stream of the step
+         * @return {@link #FULL} or {@link #FIRST} if the caller need flush or schedule the buffer, {@link #RETIRED} if the buffer was retired
+         */
+        synchronized int add(EventRecord record) {
+            if (retired) {
+                return RETIRED;
+            }
+            boolean first = records.isEmpty();
+            records.add(record);
+            bytes += record.getMessageString().length();
+            if (bytes >= maxBytes) {
+                return FULL;
+            }
+            return first ? FIRST : BUFFERED;
+        }
+
+        synchronized List<EventRecord> retire() {
+            retired = true;
+            return records;
+        }
+    }
 }
@@ -0,0 +1,25 @@
+package com.splunk.splunkjenkins.console;
+
+import hudson.Extension;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Releases the console decorator and sends remaining console records once a pipeline run is completed
+ */
+@Extension(optional = true)
+public class ConsoleRunListener extends RunListener<WorkflowRun> {
+    public ConsoleRunListener() {
+        super(WorkflowRun.class);
+    }
+
+    @Override
+    public void onCompleted(WorkflowRun run, @NonNull TaskListener listener) {
+        // send remaining console records of the run without waiting for the flush timer
+        ConsoleRecordCacheUtils.flushLog(SplunkConsoleTaskListenerDecorator.getSource(run));
+        SplunkTaskListenerFactory.removeCache(run);
+    }
+}
@@ -0,0 +1,83 @@
+package com.splunk.splunkjenkins.console;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timer wheel which fires a flush for a key once its max latency has elapsed.
+ * All keys share the same delay, so one revolution of the wheel equals the max latency
+ * and scheduling is a single queue append.
+ *
+ * @param <K> the type of the keys
+ */
+class FlushTimerWheel<K> {
+    private static final Logger LOG = Logger.getLogger(FlushTimerWheel.class.getName());
+    private static final int WHEEL_SIZE = 8;
+    private final Queue<K>[] slots;
+    private final long tickMillis;
+    private final String threadName;
+    private final Callback<K> callback;
+    private volatile long currentTick = 0;
+    private ScheduledExecutorService executor;
+
+    interface Callback<K> {
+        void expired(K key);
+    }
+
+    @SuppressWarnings("unchecked")
+    FlushTimerWheel(String threadName, long maxLatencyMillis, Callback<K> callback) {
+        this.slots = new Queue[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        // the key is placed WHEEL_SIZE - 1 ticks ahead of the current one
+        this.tickMillis = Math.max(1, maxLatencyMillis / (WHEEL_SIZE - 1));
+        this.threadName = threadName;
+        this.callback = callback;
+    }
+
+    /**
+     * schedule the key to be expired after max latency
+     *
+     * @param key the key passed to callback
+     */
+    void schedule(K key) {
+        ensureStarted();
+        long tick = currentTick + WHEEL_SIZE - 1;
+        slots[(int) (tick % WHEEL_SIZE)].add(key);
+    }
+
+    private synchronized void ensureStarted() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new NamingThreadFactory(new DaemonThreadFactory(), threadName));
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                advance();
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void advance() {
+        Queue<K> slot = slots[(int) (currentTick % WHEEL_SIZE)];
+        K key;
+        while ((key = slot.poll()) != null) {
+            try {
+                callback.expired(key);
+            } catch (Throwable ex) {
+                LOG.log(Level.WARNING, "failed to flush " + key, ex);
+            }
+        }
+        currentTick++;
+    }
+}
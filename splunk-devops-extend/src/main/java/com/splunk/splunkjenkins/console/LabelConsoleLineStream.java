@@ -1,7 +1,10 @@
 package com.splunk.splunkjenkins.console;
 
 import com.splunk.splunkjenkins.model.EventRecord;
+import com.splunk.splunkjenkins.utils.ConsoleCaptureLimiter;
+import com.splunk.splunkjenkins.utils.MultiLineEventMerger;
 import hudson.util.ByteArrayOutputStream2;
+import jenkins.util.JenkinsJVM;
 
 import java.io.FilterOutputStream;
 import java.io.IOException;
@@ -18,15 +21,39 @@ import static com.splunk.splunkjenkins.model.EventType.CONSOLE_LOG;
 public class LabelConsoleLineStream extends FilterOutputStream {
     private static final int RECEIVE_BUFFER_SIZE = 512;
     private static final Logger LOGGER = Logger.getLogger(LabelConsoleLineStream.class.getName());
+    // sends the pending event of an idle stream, so it is not held longer than the other console records
+    private static final FlushTimerWheel<LabelConsoleLineStream> pendingEventTimer = new FlushTimerWheel<>(
+            "splunkins-console-event", ConsoleRecordCacheUtils.getMaxLatencyMillis(),
+            new FlushTimerWheel.Callback<LabelConsoleLineStream>() {
+                @Override
+                public void expired(LabelConsoleLineStream stream) {
+                    stream.pendingEventExpired();
+                }
+            });
     public static final Pattern ANSI_COLOR_ESCAPE = Pattern.compile("\u001B\\[[\\d;]+m");
     private ByteArrayOutputStream2 branch = new ByteArrayOutputStream2(RECEIVE_BUFFER_SIZE);
     PipelineConsoleDecoder decoder;
     String source;
+    ConsoleCaptureLimiter limiter;
+    // the stream is used by one step, parallel branches write to their own streams
+    private final LabelMarkupText.EnclosingLabel enclosingLabel = new LabelMarkupText.EnclosingLabel();
+    // the event of the step which continuation lines such as stack trace are appended to, sent once
+    // a line starts another event, the stream is flushed or the max latency elapsed, guarded by this
+    private StringBuilder pendingEvent;
+    private long pendingEventTime;
+    private int pendingEventLines;
+    // the pending event which the timer was scheduled for, null if not scheduled
+    private StringBuilder scheduledEvent;
 
     public LabelConsoleLineStream(OutputStream out, String source, PipelineConsoleDecoder decoder) {
+        this(out, source, decoder, null);
+    }
+
+    public LabelConsoleLineStream(OutputStream out, String source, PipelineConsoleDecoder decoder, ConsoleCaptureLimiter limiter) {
         super(out);
         this.decoder = decoder;
         this.source = source;
+        this.limiter = limiter;
     }
 
     @Override
@@ -44,7 +71,7 @@ public class LabelConsoleLineStream extends FilterOutputStream {
     }
 
     protected void eol() {
-        String line = decoder.decodeLine(branch.getBuffer(), branch.size());
+        String line = decoder.decodeLine(branch.getBuffer(), branch.size(), enclosingLabel);
         if (line == null) {
             // actually line can not be null, always ends with \n, add null check in case decode error
             return;
@@ -53,16 +80,69 @@ public class LabelConsoleLineStream extends FilterOutputStream {
         branch.reset();
         line = ANSI_COLOR_ESCAPE.matcher(line).replaceAll("");
         if (StringUtils.isNotBlank(line)) {
-            EventRecord record = new EventRecord(line, CONSOLE_LOG);
-            record.setSource(source);
-            ConsoleRecordCacheUtils.enqueue(record);
+            if (limiter != null && !limiter.accept(line)) {
+                return;
+            }
+            // the continuation pattern applies to the text, not to the label of the step
+            String text = LabelMarkupText.stripLabel(line);
+            synchronized (this) {
+                if (pendingEvent != null && MultiLineEventMerger.getInstance().canAppend(pendingEventLines, text)) {
+                    pendingEvent.append('\n').append(text);
+                    pendingEventLines++;
+                    return;
+                }
+                sendPendingEvent();
+                pendingEvent = new StringBuilder(line);
+                pendingEventTime = System.currentTimeMillis();
+                pendingEventLines = 1;
+                if (scheduledEvent == null) {
+                    scheduledEvent = pendingEvent;
+                    pendingEventTimer.schedule(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the pending event which was held for the max latency, the timer is scheduled again for a newer one
+     */
+    private synchronized void pendingEventExpired() {
+        if (pendingEvent != null && pendingEvent != scheduledEvent) {
+            scheduledEvent = pendingEvent;
+            pendingEventTimer.schedule(this);
+            return;
+        }
+        scheduledEvent = null;
+        sendPendingEvent();
+    }
+
+    private synchronized void sendPendingEvent() {
+        if (pendingEvent == null) {
+            return;
         }
+        EventRecord record = new EventRecord(pendingEvent.toString(), CONSOLE_LOG);
+        record.setSource(source);
+        record.setTime(pendingEventTime);
+        pendingEvent = null;
+        ConsoleRecordCacheUtils.enqueue(record);
     }
 
     @Override
     public void flush() throws IOException {
         super.flush();
-        ConsoleRecordCacheUtils.flushLog();
+        sendPendingEvent();
+        ConsoleRecordCacheUtils.flushLog(source);
         LOGGER.log(Level.FINE, "flush splunk log for " + source);
     }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        sendPendingEvent();
+        if (limiter != null && !JenkinsJVM.isJenkinsJVM()) {
+            // the limiter on agent reports its counts to the controller limiter, which is finished once the run is completed
+            ConsoleRecordCacheUtils.flushLog(source);
+            limiter.finish(source);
+        }
+    }
 }
@@ -1,16 +1,16 @@
 package com.splunk.splunkjenkins.console;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.splunk.splunkjenkins.utils.LogEventHelper;
 import hudson.MarkupText;
 import org.apache.commons.lang3.StringEscapeUtils;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.lang.ref.SoftReference;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -22,9 +22,20 @@ public class LabelMarkupText extends MarkupText {
     private static final String PARALLEL_BRANCH_LABEL = "Branch: ";
     private static final Logger LOG = Logger.getLogger(LabelMarkupText.class.getName());
     private static final String PARALLEL_LABEL = "parallel_label";
-    //remembered enclosing label
-    private String encloseLabel = null;
-    private SoftReference<Map<String, String>> encloseLabelRef = new SoftReference<>(new HashMap<>());
+    // the label written by writePreviousLabel, the value is escaped by escapeJava
+    private static final Pattern LABEL_PREFIX = Pattern.compile("^" + PARALLEL_LABEL + "=\"(?:[^\"\\\\]|\\\\.)*\" ");
+    // max node labels remembered per run, finished blocks are evicted when BlockEndNode note is seen
+    private static final int MAX_TRACKED_LABELS = Integer.getInteger(LabelMarkupText.class.getName() + ".maxTrackedLabels", 4096);
+    // the enclosing label change of the last parsed note, applied to the writing stream under the same lock as annotation
+    private boolean labelChanged = false;
+    private String changedLabel = null;
+    // used by callers which do not track the label per stream
+    private final EnclosingLabel defaultLabel = new EnclosingLabel();
+    // node id -> parallel branch label, shared by all steps of the run which may write concurrently
+    private final Cache<String, String> encloseLabels = CacheBuilder.newBuilder()
+            .maximumSize(MAX_TRACKED_LABELS)
+            .recordStats()
+            .build();
     private String annotation = null;
     private Object lock = new Object();
 
@@ -50,6 +61,7 @@ public class LabelMarkupText extends MarkupText {
             LOG.finest(tag);
         }
         annotation = "";
+        labelChanged = false;
         try {
             ConsoleNoteHandler handler = new ConsoleNoteHandler();
             handler.read(tag);
@@ -62,29 +74,28 @@ public class LabelMarkupText extends MarkupText {
             String nodeId = handler.getNodeId();
             // NewNodeConsoleNote
             if (isNotEmpty(nodeId)) {
-                // encloseLabelRef lost in gc 
-                Map<String, String> encloseLabels = encloseLabelRef.get();
-                if (encloseLabels == null) {
-                    return;
-                }
-                if (handler.getStartId() != null) {
+                String startId = handler.getStartId();
+                if (startId != null) {
                     // BlockEndNode or BlockStartNode
-                    encloseLabel = null;
+                    setChangedLabel(null);
                     String label = handler.getLabel();
                     if (startsWith(label, PARALLEL_BRANCH_LABEL)) {
                         encloseLabels.put(nodeId, label.substring(PARALLEL_BRANCH_LABEL.length()));
+                    } else if (!startId.equals(nodeId)) {
+                        // BlockEndNode, the block is finished and no more steps will be enclosed by it
+                        encloseLabels.invalidate(startId);
                     }
                 } else {
                     String enclosingId = handler.getEnclosingId();
                     if (isNotEmpty(enclosingId)) {
                         //pipeline step  (not block level)
-                        String nodeLabel = encloseLabels.get(enclosingId);
+                        String nodeLabel = encloseLabels.getIfPresent(enclosingId);
                         if (nodeLabel != null) {
                             // update the label
                             encloseLabels.put(nodeId, nodeLabel);
-                            encloseLabel = PARALLEL_LABEL + "=\"" + StringEscapeUtils.escapeJava(nodeLabel) + "\"";
+                            setChangedLabel(PARALLEL_LABEL + "=\"" + StringEscapeUtils.escapeJava(nodeLabel) + "\"");
                         } else {
-                            encloseLabel = null;
+                            setChangedLabel(null);
                         }
                     }
                 }
@@ -94,7 +105,23 @@ public class LabelMarkupText extends MarkupText {
         }
     }
 
+    private void setChangedLabel(String label) {
+        labelChanged = true;
+        changedLabel = label;
+    }
+
     public void write(OutputStream out) throws IOException {
+        write(out, defaultLabel);
+    }
+
+    /**
+     * Writes the annotation of the last parsed note, and moves the stream to the enclosing label of the note if it has one
+     *
+     * @param out     the decoded line
+     * @param current the enclosing label of the stream which wrote the note, null to use the shared one
+     * @throws IOException if failed to write
+     */
+    public void write(OutputStream out, EnclosingLabel current) throws IOException {
         if (isDisabled) {
             return;
         }
@@ -105,13 +132,64 @@ public class LabelMarkupText extends MarkupText {
                 //clear annotation
                 annotation = "";
             }
+            if (labelChanged) {
+                (current != null ? current : defaultLabel).label = changedLabel;
+                labelChanged = false;
+            }
         }
     }
 
     public void writePreviousLabel(OutputStream out) throws IOException {
-        if (isNotEmpty(encloseLabel)) {
-            out.write(encloseLabel.getBytes(UTF_8));
+        writePreviousLabel(out, defaultLabel);
+    }
+
+    /**
+     * @param out     the decoded line
+     * @param current the enclosing label of the stream, null to use the shared one
+     * @throws IOException if failed to write
+     */
+    public void writePreviousLabel(OutputStream out, EnclosingLabel current) throws IOException {
+        String label = (current != null ? current : defaultLabel).label;
+        if (isNotEmpty(label)) {
+            out.write(label.getBytes(UTF_8));
             out.write(' ');
         }
     }
+
+    /**
+     * @param line the decoded line
+     * @return the line without the leading parallel label
+     */
+    public static String stripLabel(String line) {
+        return LABEL_PREFIX.matcher(line).replaceFirst("");
+    }
+
+    /**
+     * @return number of enclosing label lookups which found a parallel branch label
+     */
+    public long getLabelHitCount() {
+        return encloseLabels.stats().hitCount();
+    }
+
+    /**
+     * @return number of enclosing label lookups which did not find any label
+     */
+    public long getLabelMissCount() {
+        return encloseLabels.stats().missCount();
+    }
+
+    /**
+     * @return number of node labels currently tracked
+     */
+    public long getTrackedLabelCount() {
+        return encloseLabels.size();
+    }
+
+    /**
+     * The parallel branch label of the step writing to one console stream, parallel steps of a run share the node
+     * labels but each of them has its own enclosing label
+     */
+    public static class EnclosingLabel {
+        private volatile String label;
+    }
 }
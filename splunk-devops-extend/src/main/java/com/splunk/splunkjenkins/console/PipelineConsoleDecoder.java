@@ -32,10 +32,21 @@ public class PipelineConsoleDecoder implements Serializable {
 
     @CheckForNull
     public String decodeLine(byte[] in, int length) {
+        return decodeLine(in, length, null);
+    }
+
+    /**
+     * @param in     the encoded line
+     * @param length the line length
+     * @param label  the enclosing label of the stream which wrote the line, null to use the one shared by the run
+     * @return the decoded line, or null if failed to decode
+     */
+    @CheckForNull
+    public String decodeLine(byte[] in, int length, LabelMarkupText.EnclosingLabel label) {
         try {
             ByteArrayOutputStream bout = new ByteArrayOutputStream();
             if (parseLabelFlag) {
-                decodeConsoleObjectStream(in, length, bout);
+                decodeConsoleObjectStream(in, length, bout, label);
             } else {
                 PlainTextConsoleUtils.decodeConsole(in, length, bout);
             }
@@ -46,7 +57,8 @@ public class PipelineConsoleDecoder implements Serializable {
         }
     }
 
-    private void decodeConsoleObjectStream(byte[] in, int length, ByteArrayOutputStream out) throws IOException {
+    private void decodeConsoleObjectStream(byte[] in, int length, ByteArrayOutputStream out,
+                                           LabelMarkupText.EnclosingLabel label) throws IOException {
         int next = arrayIndexOf(in, 0, length, ConsoleNote.PREAMBLE);
         // perform byte[]->char[] while figuring out the char positions of the BLOBs
         int written = 0;
@@ -59,8 +71,11 @@ public class PipelineConsoleDecoder implements Serializable {
             ByteArrayInputStream b = new ByteArrayInputStream(in, next, rest);
             try {
                 ConsoleNote consoleNote = ConsoleNote.readFrom(new DataInputStream(b));
-                consoleNote.annotate(run, markupText, 0);
-                markupText.write(out);
+                // the decoder is shared by parallel steps, annotation must be written by the step which parsed it
+                synchronized (markupText) {
+                    consoleNote.annotate(run, markupText, 0);
+                    markupText.write(out, label);
+                }
             } catch (IOException | ClassNotFoundException ex) {
                 LOG.log(WARNING, "failed to decode console note", ex);
             }
@@ -69,7 +84,7 @@ public class PipelineConsoleDecoder implements Serializable {
             next = arrayIndexOf(in, written, length, ConsoleNote.PREAMBLE);
         }
         if (length - written > 0) {
-            markupText.writePreviousLabel(out);
+            markupText.writePreviousLabel(out, label);
             // finish the remaining bytes->chars conversion
             out.write(in, written, length - written);
         }
@@ -1,8 +1,12 @@
 package com.splunk.splunkjenkins.console;
 
 import com.splunk.splunkjenkins.SplunkJenkinsInstallation;
+import com.splunk.splunkjenkins.model.ConsoleCapturePolicy;
+import com.splunk.splunkjenkins.utils.ConsoleCaptureBudget;
+import com.splunk.splunkjenkins.utils.ConsoleCaptureLimiter;
 import com.splunk.splunkjenkins.utils.RemoteUtils;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.remoting.Channel;
 import jenkins.util.JenkinsJVM;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.jenkinsci.plugins.workflow.log.TaskListenerDecorator;
@@ -20,15 +24,42 @@ public class SplunkConsoleTaskListenerDecorator extends TaskListenerDecorator {
     // it is optional but not use Optional<Map> since Optional is not serializable
     Map remoteSplunkinsConfig = null;
     String source;
+    // null if the console is captured without limits
+    ConsoleCapturePolicy capturePolicy;
+    // remoting proxy of the controller limiter, only set on the copy sent to an agent
+    ConsoleCaptureBudget captureBudget;
+    private transient volatile ConsoleCaptureLimiter limiter;
 
     public SplunkConsoleTaskListenerDecorator(WorkflowRun run) {
         this.decoder = new PipelineConsoleDecoder(run);
-        this.source = run.getUrl() + "console";
+        this.source = getSource(run);
+        this.capturePolicy = SplunkJenkinsInstallation.get().getConsoleCapturePolicy(source);
         if (ENABLE_REMOTE_DECORATOR) {
             setRemoteSplunkinsConfig(SplunkJenkinsInstallation.get().toMap());
         }
     }
 
+    private SplunkConsoleTaskListenerDecorator(SplunkConsoleTaskListenerDecorator other, ConsoleCaptureBudget captureBudget) {
+        this.decoder = other.decoder;
+        this.remoteSplunkinsConfig = other.remoteSplunkinsConfig;
+        this.source = other.source;
+        this.capturePolicy = other.capturePolicy;
+        this.captureBudget = captureBudget;
+    }
+
+    /**
+     * the copy sent to an agent draws from the console capture budget of the build on the controller
+     *
+     * @return the object to serialize
+     */
+    private Object writeReplace() {
+        Channel channel = Channel.current();
+        if (channel == null || capturePolicy == null || captureBudget != null || !JenkinsJVM.isJenkinsJVM()) {
+            return this;
+        }
+        return new SplunkConsoleTaskListenerDecorator(this, channel.export(ConsoleCaptureBudget.class, getLimiter()));
+    }
+
     @NonNull
     @Override
     public OutputStream decorate(@NonNull OutputStream outputStream) throws IOException {
@@ -45,7 +76,39 @@ public class SplunkConsoleTaskListenerDecorator extends TaskListenerDecorator {
             decoder = new PipelineConsoleDecoder(null);
         }
         //called for every step 
-        return new LabelConsoleLineStream(outputStream, source, decoder);
+        return new LabelConsoleLineStream(outputStream, source, decoder, getLimiter());
+    }
+
+    private ConsoleCaptureLimiter getLimiter() {
+        if (capturePolicy == null) {
+            return null;
+        }
+        if (limiter == null) {
+            synchronized (this) {
+                if (limiter == null) {
+                    limiter = new ConsoleCaptureLimiter(capturePolicy, captureBudget);
+                }
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * send the retained tail lines and the summary of dropped lines
+     */
+    void finish() {
+        ConsoleCaptureLimiter currentLimiter = limiter;
+        if (currentLimiter != null) {
+            currentLimiter.finish(source);
+        }
+    }
+
+    /**
+     * @param run the pipeline run
+     * @return the source of console records sent for the run
+     */
+    public static String getSource(WorkflowRun run) {
+        return run.getUrl() + "console";
     }
 
     private void setRemoteSplunkinsConfig(Map remoteSplunkinsConfig) {
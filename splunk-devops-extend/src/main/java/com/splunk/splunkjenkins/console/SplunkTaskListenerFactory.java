@@ -1,8 +1,5 @@
 package com.splunk.splunkjenkins.console;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.splunk.splunkjenkins.SplunkJenkinsInstallation;
 import hudson.Extension;
 import hudson.model.Queue;
@@ -14,7 +11,7 @@ import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,15 +20,9 @@ import static com.splunk.splunkjenkins.model.EventType.CONSOLE_LOG;
 @Extension(optional = true)
 public class SplunkTaskListenerFactory implements TaskListenerDecorator.Factory {
     private static final Logger LOGGER = Logger.getLogger(SplunkConsoleTaskListenerDecorator.class.getName());
-    private static final transient LoadingCache<WorkflowRun, SplunkConsoleTaskListenerDecorator> cachedDecorator = CacheBuilder.newBuilder()
-            .weakKeys()
-            .maximumSize(1024)
-            .build(new CacheLoader<WorkflowRun, SplunkConsoleTaskListenerDecorator>() {
-                @Override
-                public SplunkConsoleTaskListenerDecorator load(WorkflowRun key) {
-                    return new SplunkConsoleTaskListenerDecorator(key);
-                }
-            });
+    // decorators of running pipelines keyed by run id, not stored as a run action which would be saved to build.xml,
+    // the map is empty after restart and the decorators are recreated on demand
+    private static final ConcurrentHashMap<String, SplunkConsoleTaskListenerDecorator> decorators = new ConcurrentHashMap<>();
 
     @Override
     /*
@@ -57,17 +48,43 @@ public class SplunkTaskListenerFactory implements TaskListenerDecorator.Factory
                 if (SplunkJenkinsInstallation.get().isJobIgnored(run.getUrl())) {
                     return null;
                 }
-                return cachedDecorator.get(run);
+                return getDecorator(run);
             }
         } catch (IOException x) {
             LOGGER.log(Level.WARNING, null, x);
-        } catch (ExecutionException e) {
-            LOGGER.finer("failed to load cached decorator");
         }
         return null;
     }
 
+    private static SplunkConsoleTaskListenerDecorator getDecorator(WorkflowRun run) {
+        String runId = run.getExternalizableId();
+        SplunkConsoleTaskListenerDecorator decorator = decorators.get(runId);
+        if (decorator == null && !run.isBuilding()) {
+            // the run is completed, removeCache was already called and would never release a new entry
+            return new SplunkConsoleTaskListenerDecorator(run);
+        }
+        if (decorator == null) {
+            decorator = new SplunkConsoleTaskListenerDecorator(run);
+            SplunkConsoleTaskListenerDecorator previous = decorators.putIfAbsent(runId, decorator);
+            if (previous != null) {
+                decorator = previous;
+            } else if (!run.isBuilding()) {
+                // completed while the entry was added
+                decorators.remove(runId, decorator);
+            }
+        }
+        return decorator;
+    }
+
+    /**
+     * release the decorator of the run, called once the run is completed
+     *
+     * @param run the pipeline run
+     */
     public static void removeCache(WorkflowRun run) {
-        cachedDecorator.invalidate(run);
+        SplunkConsoleTaskListenerDecorator decorator = decorators.remove(run.getExternalizableId());
+        if (decorator != null) {
+            decorator.finish();
+        }
     }
 }
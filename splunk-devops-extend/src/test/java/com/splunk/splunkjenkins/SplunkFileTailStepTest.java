@@ -0,0 +1,46 @@
+package com.splunk.splunkjenkins;
+
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.BuildWatcher;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.UUID;
+
+import static com.splunk.splunkjenkins.SplunkConfigUtil.checkTokenAvailable;
+import static com.splunk.splunkjenkins.SplunkConfigUtil.verifySplunkSearchResult;
+
+public class SplunkFileTailStepTest {
+    @ClassRule
+    public static BuildWatcher buildWatcher = new BuildWatcher();
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+    String fileName = UUID.randomUUID().toString() + ".log";
+
+    private String jobScript = "node{\n" +
+            "sendSplunkFileTail(includes: \"*.log\", interval: 1) {\n" +
+            "sh \"echo 'first line' > " + fileName + "; sleep 3\";\n" +
+            "sh \"printf 'last line without line break' >> " + fileName + "\";\n" +
+            "}\n" +
+            "}";
+
+    @Before
+    public void setUp() throws Exception {
+        org.junit.Assume.assumeTrue(checkTokenAvailable());
+    }
+
+    @Test
+    public void testTailFile() throws Exception {
+        long startTime = System.currentTimeMillis();
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+        p.setDefinition(new CpsFlowDefinition(jobScript, true));
+        WorkflowRun b1 = r.assertBuildStatusSuccess(p.scheduleBuild2(0));
+        verifySplunkSearchResult("source=" + b1.getUrl() + fileName + " \"first line\"", startTime, 1);
+        verifySplunkSearchResult("source=" + b1.getUrl() + fileName + " \"last line without line break\"", startTime, 1);
+    }
+}
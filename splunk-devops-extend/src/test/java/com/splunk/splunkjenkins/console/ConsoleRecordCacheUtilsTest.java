@@ -0,0 +1,29 @@
+package com.splunk.splunkjenkins.console;
+
+import com.splunk.splunkjenkins.model.EventRecord;
+import com.splunk.splunkjenkins.model.EventType;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConsoleRecordCacheUtilsTest {
+    private EventRecord record(String text) {
+        return new EventRecord(text, EventType.CONSOLE_LOG);
+    }
+
+    @Test
+    public void sourceBufferStates() {
+        ConsoleRecordCacheUtils.SourceBuffer buffer = new ConsoleRecordCacheUtils.SourceBuffer(10);
+        assertEquals(ConsoleRecordCacheUtils.SourceBuffer.FIRST, buffer.add(record("line1")));
+        assertEquals(ConsoleRecordCacheUtils.SourceBuffer.BUFFERED, buffer.add(record("l2")));
+        // 5 + 2 + 3 bytes reach the max batch bytes
+        assertEquals(ConsoleRecordCacheUtils.SourceBuffer.FULL, buffer.add(record("l3\n")));
+        List<EventRecord> records = buffer.retire();
+        assertEquals(3, records.size());
+        // added after a concurrent flush, the caller retries with a new buffer
+        assertEquals(ConsoleRecordCacheUtils.SourceBuffer.RETIRED, buffer.add(record("line4")));
+        assertEquals(3, records.size());
+    }
+}
@@ -0,0 +1,37 @@
+package com.splunk.splunkjenkins.console;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlushTimerWheelTest {
+    @Test
+    public void expireAfterMaxLatency() throws InterruptedException {
+        final List<String> expired = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(2);
+        FlushTimerWheel<String> wheel = new FlushTimerWheel<>("splunkins-test-flush", 70, new FlushTimerWheel.Callback<String>() {
+            @Override
+            public void expired(String key) {
+                expired.add(key);
+                latch.countDown();
+                if ("a".equals(key)) {
+                    throw new IllegalStateException("the wheel keeps running");
+                }
+            }
+        });
+        long start = System.currentTimeMillis();
+        wheel.schedule("a");
+        wheel.schedule("b");
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        // one revolution of the wheel, one tick may be consumed before the key was scheduled
+        assertTrue(System.currentTimeMillis() - start >= 60);
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains("a") && expired.contains("b"));
+    }
+}
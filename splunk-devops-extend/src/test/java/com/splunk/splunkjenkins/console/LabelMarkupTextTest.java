@@ -26,5 +26,43 @@ public class LabelMarkupTextTest{
         labelMarkupText.writePreviousLabel(outputStream);
         outputs=outputStream.toString();
         assertEquals("parallel_label=\"a\" ", outputs);
+        assertEquals(1, labelMarkupText.getLabelHitCount());
+        // BlockEndNode of branch a
+        labelMarkupText.addMarkup(0,0,"<span class=\"pipeline-new-node\" nodeId=\"9\" startId=\"5\" enclosingId=\"3\">","</span>");
+        labelMarkupText.addMarkup(0,0,"<span class=\"pipeline-new-node\" nodeId=\"10\" enclosingId=\"5\">","&nbsp; </span>");
+        outputStream=new ByteArrayOutputStream();
+        labelMarkupText.write(outputStream);
+        labelMarkupText.writePreviousLabel(outputStream);
+        assertEquals("", outputStream.toString());
+        assertEquals(1, labelMarkupText.getLabelMissCount());
+    }
+
+    @Test
+    public void testParallelStreams() throws IOException {
+        LabelMarkupText labelMarkupText=new LabelMarkupText();
+        LabelMarkupText.EnclosingLabel streamA=new LabelMarkupText.EnclosingLabel();
+        LabelMarkupText.EnclosingLabel streamB=new LabelMarkupText.EnclosingLabel();
+        OutputStream outputStream=new ByteArrayOutputStream();
+        labelMarkupText.addMarkup(0,0,"<span class=\"pipeline-new-node\" nodeId=\"5\" startId=\"5\" enclosingId=\"3\" label=\"Branch: a\">","</span>");
+        labelMarkupText.write(outputStream, streamA);
+        labelMarkupText.addMarkup(0,0,"<span class=\"pipeline-new-node\" nodeId=\"6\" startId=\"6\" enclosingId=\"3\" label=\"Branch: b\">","</span>");
+        labelMarkupText.write(outputStream, streamB);
+        // the steps of both branches start before either writes a line
+        labelMarkupText.addMarkup(0,0,"<span class=\"pipeline-new-node\" nodeId=\"7\" enclosingId=\"5\">","&nbsp; </span>");
+        labelMarkupText.write(outputStream, streamA);
+        labelMarkupText.addMarkup(0,0,"<span class=\"pipeline-new-node\" nodeId=\"8\" enclosingId=\"6\">","&nbsp; </span>");
+        labelMarkupText.write(outputStream, streamB);
+        outputStream=new ByteArrayOutputStream();
+        labelMarkupText.writePreviousLabel(outputStream, streamA);
+        assertEquals("parallel_label=\"a\" ", outputStream.toString());
+        outputStream=new ByteArrayOutputStream();
+        labelMarkupText.writePreviousLabel(outputStream, streamB);
+        assertEquals("parallel_label=\"b\" ", outputStream.toString());
+    }
+
+    @Test
+    public void testStripLabel() {
+        assertEquals("\tat Foo.bar(Foo.java:1)", LabelMarkupText.stripLabel("parallel_label=\"a \\\"b\\\"\" \tat Foo.bar(Foo.java:1)"));
+        assertEquals("href=url text", LabelMarkupText.stripLabel("href=url text"));
     }
 }
\ No newline at end of file
@@ -1,6 +1,11 @@
 package com.splunk.splunkjenkins;
 
+import com.splunk.splunkjenkins.listeners.LoggingQueueListener;
 import com.splunk.splunkjenkins.model.EventType;
+import com.splunk.splunkjenkins.utils.DeltaTracker;
+import com.splunk.splunkjenkins.utils.ListenerExecutor;
+import com.splunk.splunkjenkins.utils.NodeStatusDebouncer;
+import com.splunk.splunkjenkins.utils.QueuePhaseAggregator;
 import com.splunk.splunkjenkins.utils.SplunkLogService;
 import hudson.Extension;
 import hudson.model.*;
@@ -32,7 +37,22 @@ public class HealthMonitor extends AsyncPeriodicWork {
     private long slaveUpdatePeriod = TimeUnit.MINUTES.toMillis(Math.max(2, Long.getLong("com.splunk.splunkjenkins.slaveMonitorMinutes", 8)));
     private long period = TimeUnit.SECONDS.toMillis(Math.max(20, Long.getLong("com.splunk.splunkjenkins.queueMonitorSeconds", 45)));
 
-    private Set<String> slaveNames = new HashSet<>();
+    // disk and memory monitors report a slightly different size on every cycle, only the warning state is compared
+    private static final Set<String> BUCKETED_MONITORS = new HashSet<>(Arrays.asList(
+            "SwapSpaceMonitor", "TemporarySpaceMonitor", "DiskSpaceMonitor"));
+    // only new and changed entities are sent, fields which change on every cycle are not compared
+    private final DeltaTracker slaveTracker = new DeltaTracker("uptime", "ResponseTimeMonitor") {
+        @Override
+        protected Object getState(String key, Object value) {
+            if (BUCKETED_MONITORS.contains(key) && value instanceof String) {
+                return ((String) value).startsWith("warning:") ? "warning" : "ok";
+            }
+            return value;
+        }
+    };
+    private final DeltaTracker jobTracker = new DeltaTracker("job_duration");
+    private final DeltaTracker memoryTracker = new DeltaTracker();
+    private final DeltaTracker queueTracker = new DeltaTracker("queue_time");
     //use protected to allow tweak it in testcase
     /**
      * Timestamp of the last time slave information was accessed
@@ -59,6 +79,9 @@ public class HealthMonitor extends AsyncPeriodicWork {
             return;
         }
         sendPendingQueue();
+        if (QueuePhaseAggregator.isEnabled()) {
+            QueuePhaseAggregator.getInstance().send();
+        }
         if (System.currentTimeMillis() - lastAccessTime < slaveUpdatePeriod) {
             return;
         }
@@ -69,30 +92,25 @@ public class HealthMonitor extends AsyncPeriodicWork {
 
     private void sendNodeUpdate() {
         Map<String, Map<String, Object>> slaveStats = getSlaveStats();
-        Set<String> aliveSlaves = slaveStats.keySet();
         //send event one by one instead of list to aid search
-        SplunkLogService.getInstance().sendBatch(slaveStats.values(), SLAVE_INFO);
-        List<Map> removedSlavs = new ArrayList<>();
-        for (String slaveName : slaveNames) {
-            if (!aliveSlaves.contains(slaveName)) {
-                Map event = new HashMap();
-                event.put(Constants.TAG, SLAVE_TAG_NAME);
-                event.put(NODE_NAME, slaveName);
-                event.put("status", "removed");
-                removedSlavs.add(event);
-            }
+        SplunkLogService.getInstance().sendBatch(slaveTracker.update(slaveStats), SLAVE_INFO);
+        sendRemoved(slaveTracker, SLAVE_TAG_NAME, NODE_NAME, SLAVE_INFO);
+        Map<String, Map<String, Object>> runningJobs = new HashMap<>();
+        for (Map job : getRunningJob()) {
+            runningJobs.put((String) job.get(Constants.BUILD_ID), job);
         }
-        SplunkLogService.getInstance().sendBatch(removedSlavs, SLAVE_INFO);
-        SplunkLogService.getInstance().sendBatch(getRunningJob(), QUEUE_INFO);
-        //replace slave names, at one time should only one thread is running, so modify slaveNames is safe without lock
-        slaveNames = aliveSlaves;
+        SplunkLogService.getInstance().sendBatch(jobTracker.update(runningJobs), QUEUE_INFO);
+        sendRemoved(jobTracker, Constants.JOB_EVENT_MONITOR, Constants.BUILD_ID, QUEUE_INFO);
         //update master stats
         Map masterEvent = getMasterStats();
         masterEvent.put("item", name);
+        masterEvent.putAll(LoggingQueueListener.getTrackingStats());
+        masterEvent.put("node_status_coalesced", NodeStatusDebouncer.getInstance().getCoalescedCount());
+        masterEvent.put("listener_events_dropped", ListenerExecutor.getDroppedCount());
         masterEvent.put(Constants.TAG, Constants.QUEUE_TAG_NAME);
         SplunkLogService.getInstance().send(masterEvent, QUEUE_INFO);
         //send memory details
-        List<Map> memoryUsages = new ArrayList();
+        Map<String, Map<String, Object>> memoryUsages = new HashMap<>();
         for (MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans()) {
             Map<String, Object> memoryPoolUsage = new HashMap();
             MemoryUsage usageDetail = memoryPoolMXBean.getUsage();
@@ -102,18 +120,18 @@ public class HealthMonitor extends AsyncPeriodicWork {
             memoryPoolUsage.put("max_size", usageDetail.getMax() >> 20);
             memoryPoolUsage.put("committed_size", usageDetail.getCommitted() >> 20);
             memoryPoolUsage.put("used_size", usageDetail.getUsed() >> 20);
-            memoryUsages.add(memoryPoolUsage);
+            memoryUsages.put(memoryPoolMXBean.getName(), memoryPoolUsage);
         }
-        SplunkLogService.getInstance().sendBatch(memoryUsages, EventType.QUEUE_INFO);
+        SplunkLogService.getInstance().sendBatch(memoryTracker.update(memoryUsages), EventType.QUEUE_INFO);
     }
 
     private void sendPendingQueue() {
         //send queue items
         Queue.Item[] items = Jenkins.getInstance().getQueue().getItems();
-        List<Map> queue = new ArrayList<>(items.length);
+        Map<String, Map<String, Object>> queue = new HashMap<>();
         for (int i = 0; i < items.length; i++) {
             Queue.Item item = items[i];
-            Map queueItem = new HashMap();
+            Map<String, Object> queueItem = new HashMap();
             queueItem.put("queue_id", item.getId());
             queueItem.put("queue_time", (System.currentTimeMillis() - item.getInQueueSince()) / 1000f);
             queueItem.put("stuck", item.isStuck());
@@ -127,9 +145,33 @@ public class HealthMonitor extends AsyncPeriodicWork {
                 jobName = item.task.getUrl();
             }
             queueItem.put("task", jobName);
-            queue.add(queueItem);
+            queue.put(String.valueOf(item.getId()), queueItem);
+        }
+        SplunkLogService.getInstance().sendBatch(queueTracker.update(queue), QUEUE_INFO);
+        sendRemoved(queueTracker, Constants.QUEUE_WAITING_ITEM_NAME, "queue_id", QUEUE_INFO);
+    }
+
+    /**
+     * Sends a removed event for each entity which was reported by the previous update but not the last one,
+     * so the last state found in Splunk is not taken as current
+     *
+     * @param tracker   the tracker of the entities
+     * @param tag       the event tag of the entities
+     * @param idField   the field of the entity id
+     * @param eventType the event type of the entities
+     */
+    private void sendRemoved(DeltaTracker tracker, String tag, String idField, EventType eventType) {
+        List<Map> removed = new ArrayList<>();
+        for (String id : tracker.getRemoved()) {
+            Map event = new HashMap();
+            event.put(Constants.TAG, tag);
+            event.put(idField, id);
+            event.put("status", "removed");
+            removed.add(event);
+        }
+        if (!removed.isEmpty()) {
+            SplunkLogService.getInstance().sendBatch(removed, eventType);
         }
-        SplunkLogService.getInstance().sendBatch(queue, QUEUE_INFO);
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,116 @@
+package com.splunk.splunkjenkins;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+import jenkins.model.Jenkins;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Samples the controller stats periodically, so queue listeners copy the latest snapshot
+ * instead of computing the executor load and JVM stats on every queue transition while holding the queue lock.
+ */
+@Extension
+public class MasterStatsSampler extends PeriodicWork {
+    private static final long PERIOD = Math.max(100, Long.getLong(MasterStatsSampler.class.getName() + ".periodMillis", 1000));
+    // the snapshot is computed in place if the sampler stopped or was not started yet
+    private static final long MAX_AGE = PERIOD * 5;
+    private static volatile Snapshot snapshot;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRecurrencePeriod() {
+        return PERIOD;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doRun() throws Exception {
+        if (SplunkJenkinsInstallation.get().isEnabled()) {
+            snapshot = Snapshot.sample();
+        }
+    }
+
+    /**
+     * @return the latest controller stats, at most a few sampling periods old
+     */
+    public static Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null || System.currentTimeMillis() - current.time > MAX_AGE) {
+            current = Snapshot.sample();
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Immutable controller stats
+     */
+    public static final class Snapshot {
+        private final long time;
+        private final int queueLength;
+        private final int totalComputers;
+        private final int idleExecutors;
+        private final int totalExecutors;
+        private final long heapSizeMB;
+        private final int threadCount;
+        private final int daemonCount;
+
+        private Snapshot(long time, int queueLength, int totalComputers, int idleExecutors, int totalExecutors,
+                         long heapSizeMB, int threadCount, int daemonCount) {
+            this.time = time;
+            this.queueLength = queueLength;
+            this.totalComputers = totalComputers;
+            this.idleExecutors = idleExecutors;
+            this.totalExecutors = totalExecutors;
+            this.heapSizeMB = heapSizeMB;
+            this.threadCount = threadCount;
+            this.daemonCount = daemonCount;
+        }
+
+        /**
+         * @return the current controller stats
+         */
+        public static Snapshot sample() {
+            Jenkins instance = Jenkins.get();
+            ThreadMXBean threadMXbean = ManagementFactory.getThreadMXBean();
+            return new Snapshot(System.currentTimeMillis(),
+                    instance.overallLoad.computeQueueLength(),
+                    instance.getComputers().length,
+                    instance.overallLoad.computeIdleExecutors(),
+                    instance.overallLoad.computeTotalExecutors(),
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20,
+                    threadMXbean.getThreadCount(),
+                    threadMXbean.getDaemonThreadCount());
+        }
+
+        /**
+         * @return the sampling time in milliseconds
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return a new mutable map of the stats
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> event = new HashMap<>();
+            event.put("queue_length", queueLength);
+            event.put("total_computers", totalComputers);
+            event.put("idle_executors", idleExecutors);
+            event.put("total_executors", totalExecutors);
+            event.put("heap_size_mb", heapSizeMB);
+            event.put("thread_count", threadCount);
+            event.put("daemon_count", daemonCount);
+            return event;
+        }
+    }
+}
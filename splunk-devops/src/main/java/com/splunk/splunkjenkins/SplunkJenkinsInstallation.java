@@ -1,8 +1,10 @@
 package com.splunk.splunkjenkins;
 
+import com.splunk.splunkjenkins.model.ConsoleCapturePolicy;
 import com.splunk.splunkjenkins.model.EventType;
 import com.splunk.splunkjenkins.model.MetaDataConfigItem;
 import com.splunk.splunkjenkins.utils.SplunkLogService;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import groovy.lang.GroovyCodeSource;
 import hudson.Extension;
@@ -34,8 +36,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -85,6 +89,7 @@ public class SplunkJenkinsInstallation extends GlobalConfiguration {
     private String metadataHost;
     private String metadataSource;
     private String ignoredJobs;
+    private String consoleCapturePolicies;
     private Boolean globalPipelineFilter;
 
     //below are all transient properties
@@ -101,6 +106,7 @@ public class SplunkJenkinsInstallation extends GlobalConfiguration {
     private transient Set<MetaDataConfigItem> metadataItemSet = new HashSet<>();
     private transient String defaultMetaData;
     private transient Pattern ignoredJobPattern;
+    private transient List<ConsoleCapturePolicy> capturePolicyList = Collections.emptyList();
 
     /**
      * Constructs SplunkJenkinsInstallation with option to load from configuration file
@@ -349,6 +355,23 @@ public class SplunkJenkinsInstallation extends GlobalConfiguration {
         return FormValidation.ok();
     }
 
+    /**
+     * Validates the console capture policies
+     *
+     * @param value the policies, one per line
+     * @return a {@link hudson.util.FormValidation} object.
+     */
+    @RequirePOST
+    public FormValidation doCheckConsoleCapturePolicies(@QueryParameter String value) {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        try {
+            ConsoleCapturePolicy.parse(value);
+        } catch (IllegalArgumentException ex) {
+            return FormValidation.error(ex.getMessage());
+        }
+        return FormValidation.ok();
+    }
+
     ////////END OF FORM VALIDATION/////////
     /**
      * Updates the cached configuration values including URLs, script content,
@@ -381,6 +404,12 @@ public class SplunkJenkinsInstallation extends GlobalConfiguration {
                         ignoredJobs, ex.getDescription()});
             }
         }
+        try {
+            capturePolicyList = ConsoleCapturePolicy.parse(consoleCapturePolicies);
+        } catch (IllegalArgumentException ex) {
+            capturePolicyList = Collections.emptyList();
+            LOG.log(Level.SEVERE, "invalid console capture policies, error: {0}", ex.getMessage());
+        }
         try {
             String scheme = useSSL ? "https://" : "http://";
             jsonUrl = scheme + host + ":" + port + JSON_ENDPOINT;
@@ -964,6 +993,40 @@ public class SplunkJenkinsInstallation extends GlobalConfiguration {
         this.ignoredJobs = ignoredJobs;
     }
 
+    /**
+     * <p>Getter for the field <code>consoleCapturePolicies</code>.</p>
+     *
+     * @return the console capture policies, one per line
+     */
+    public String getConsoleCapturePolicies() {
+        return consoleCapturePolicies;
+    }
+
+    /**
+     * <p>Setter for the field <code>consoleCapturePolicies</code>.</p>
+     *
+     * @param consoleCapturePolicies the console capture policies, one per line
+     */
+    public void setConsoleCapturePolicies(String consoleCapturePolicies) {
+        this.consoleCapturePolicies = consoleCapturePolicies;
+    }
+
+    /**
+     * Finds the console capture policy of the build
+     *
+     * @param buildUrl the build url or console source
+     * @return the first matched policy, or null if the console is captured without limits
+     */
+    @CheckForNull
+    public ConsoleCapturePolicy getConsoleCapturePolicy(String buildUrl) {
+        for (ConsoleCapturePolicy policy : capturePolicyList) {
+            if (policy.matches(buildUrl)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
     /**
      * <p>Getter for the field <code>globalPipelineFilter</code>.</p>
      *
@@ -1,5 +1,7 @@
 package com.splunk.splunkjenkins;
 
+import com.splunk.splunkjenkins.model.ConsoleCapturePolicy;
+import com.splunk.splunkjenkins.utils.ConsoleCaptureLimiter;
 import com.splunk.splunkjenkins.utils.PlainTextConsoleUtils;
 import com.splunk.splunkjenkins.utils.SplunkLogService;
 import hudson.Extension;
@@ -113,6 +115,10 @@ public class TeeConsoleLogFilter extends ConsoleLogFilter implements Serializabl
         TeeOutputStream teeOutput = new TeeOutputStream(output, source);
         teeOutput.setRequireLineNumber(useLineNumber);
         teeOutput.setCacheSize(cacheSize);
+        ConsoleCapturePolicy policy = SplunkJenkinsInstallation.get().getConsoleCapturePolicy(source);
+        if (policy != null) {
+            teeOutput.setLimiter(new ConsoleCaptureLimiter(policy));
+        }
         return teeOutput;
     }
 
@@ -128,11 +134,19 @@ public class TeeConsoleLogFilter extends ConsoleLogFilter implements Serializabl
         private ByteArrayOutputStream2 logText = new ByteArrayOutputStream2(Constants.MIN_BUFFER_SIZE);
         SimpleDateFormat sdf = new SimpleDateFormat(LOG_TIME_FORMAT, Locale.US);
         private long cacheSize = Constants.MIN_BUFFER_SIZE;
+        //holds one decoded line when a capture policy applies
+        private ByteArrayOutputStream2 lineText;
+        private ConsoleCaptureLimiter limiter;
 
         public void setCacheSize(long cacheSize) {
             this.cacheSize = cacheSize;
         }
 
+        public void setLimiter(ConsoleCaptureLimiter limiter) {
+            this.limiter = limiter;
+            this.lineText = new ByteArrayOutputStream2(RECEIVE_BUFFER_SIZE);
+        }
+
         public void setRequireLineNumber(boolean requireLineNumber) {
             this.requireLineNumber = requireLineNumber;
         }
@@ -147,6 +161,9 @@ public class TeeConsoleLogFilter extends ConsoleLogFilter implements Serializabl
         public void close() throws IOException {
             super.close();
             flushLog();
+            if (limiter != null) {
+                limiter.finish(sourceName);
+            }
             logText.close();
             branch.close();
         }
@@ -172,13 +189,21 @@ public class TeeConsoleLogFilter extends ConsoleLogFilter implements Serializabl
                 return;
             }
             lineCounter++;
+            ByteArrayOutputStream2 target = limiter == null ? logText : lineText;
             //ISO 8601 datetime, and build url and line number
             String prefix = sdf.format(new Date()) + "  ";
-            logText.write(prefix.getBytes(UTF_8));
+            target.write(prefix.getBytes(UTF_8));
             if (requireLineNumber) {
-                logText.write(("line:" + lineCounter + "  ").getBytes(UTF_8));
+                target.write(("line:" + lineCounter + "  ").getBytes(UTF_8));
+            }
+            PlainTextConsoleUtils.decodeConsole(branch.getBuffer(), branch.size(), target);
+            if (limiter != null) {
+                String line = limiter.isTailRetained() ? lineText.toString("UTF-8") : null;
+                if (limiter.accept(line, lineText.size())) {
+                    lineText.writeTo(logText);
+                }
+                lineText.reset();
             }
-            PlainTextConsoleUtils.decodeConsole(branch.getBuffer(), branch.size(), logText);
             if (logText.size() >= cacheSize) {
                 flushLog();
             }
@@ -1,8 +1,10 @@
 package com.splunk.splunkjenkins;
 
+import com.splunk.splunkjenkins.utils.ListenerExecutor;
 import com.splunk.splunkjenkins.utils.SplunkLogService;
 import jenkins.model.Jenkins;
 import org.acegisecurity.Authentication;
+import org.apache.commons.lang3.StringUtils;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -12,6 +14,7 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -23,11 +26,18 @@ import static com.splunk.splunkjenkins.model.EventType.JENKINS_CONFIG;
 /**
  * Servlet filter that logs Jenkins configuration changes and user actions to Splunk.
  * Captures POST requests for audit trail purposes.
+ * The filter runs for every request, so the cheap checks come first: the method, then the path,
+ * then the config and the authentication, other requests are passed on without allocation.
  */
 public class WebPostAccessLogger implements Filter {
     private static final Logger LOG = Logger.getLogger(WebPostAccessLogger.class.getName());
+    // build and send the audit event on the listener executor instead of the request thread
+    private static final boolean ASYNC = Boolean.getBoolean(WebPostAccessLogger.class.getName() + ".async");
+    private static final String[] AUDITED_ACTIONS = {"configSubmit", "createSubmit", "updateSubmit", "script", "doDelete"};
     // Package-visible for testing
-    static final Pattern FILTER_PATTERN = Pattern.compile("/(?:configSubmit|createSubmit|updateSubmit|script|doDelete)");
+    static final Pattern FILTER_PATTERN = Pattern.compile("/(?:" + StringUtils.join(AUDITED_ACTIONS, "|") + ")");
+    // matches the same paths as FILTER_PATTERN
+    static final ActionTrie ACTION_TRIE = new ActionTrie(AUDITED_ACTIONS);
 
     /** {@inheritDoc} */
     @Override
@@ -47,9 +57,6 @@ public class WebPostAccessLogger implements Filter {
     }
 
     private void loggerUserAction(ServletRequest servletRequest) {
-        if (SplunkJenkinsInstallation.get().isEventDisabled(JENKINS_CONFIG)) {
-            return;
-        }
         if (!(servletRequest instanceof HttpServletRequest)) {
             return;
         }
@@ -57,17 +64,34 @@ public class WebPostAccessLogger implements Filter {
         if (!"POST".equals(request.getMethod())) {
             return;
         }
+        final String path = request.getRequestURI();
+        if (path == null || !ACTION_TRIE.matches(path)) {
+            return;
+        }
+        if (SplunkJenkinsInstallation.get().isEventDisabled(JENKINS_CONFIG)) {
+            return;
+        }
         Authentication auth = Jenkins.getAuthentication();
-        String path = request.getRequestURI();
-        if (auth == null || path == null || !auth.isAuthenticated()) {
+        if (auth == null || !auth.isAuthenticated()) {
             return;
         }
-        if (!FILTER_PATTERN.matcher(path).find()) {
+        final String userName = auth.getName();
+        if (!ASYNC) {
+            send(userName, path);
             return;
         }
+        ListenerExecutor.execute(userName, new Runnable() {
+            @Override
+            public void run() {
+                send(userName, path);
+            }
+        });
+    }
+
+    private static void send(String userName, String path) {
         Map<String, String> auditInfo = new HashMap();
-        auditInfo.put("user", auth.getName());
-        auditInfo.put("message", "POST " + request.getRequestURI());
+        auditInfo.put("user", userName);
+        auditInfo.put("message", "POST " + path);
         auditInfo.put(TAG, "audit_trail");
         SplunkLogService.getInstance().send(auditInfo, JENKINS_CONFIG, "web_access");
     }
@@ -77,4 +101,63 @@ public class WebPostAccessLogger implements Filter {
     public void destroy() {
 
     }
+
+    /**
+     * Trie of the audited actions, a path matches if an action follows any '/' of it
+     */
+    static class ActionTrie {
+        private final Node root = new Node();
+
+        ActionTrie(String... actions) {
+            for (String action : actions) {
+                Node node = root;
+                for (int i = 0; i < action.length(); i++) {
+                    node = node.child(action.charAt(i), true);
+                }
+                node.terminal = true;
+            }
+        }
+
+        /**
+         * @param path the request path
+         * @return true if the path contains '/' followed by an action
+         */
+        boolean matches(String path) {
+            for (int start = path.indexOf('/'); start >= 0; start = path.indexOf('/', start + 1)) {
+                Node node = root;
+                for (int i = start + 1; i < path.length(); i++) {
+                    node = node.child(path.charAt(i), false);
+                    if (node == null) {
+                        break;
+                    }
+                    if (node.terminal) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static class Node {
+            char[] keys = new char[0];
+            Node[] children = new Node[0];
+            boolean terminal;
+
+            Node child(char key, boolean create) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] == key) {
+                        return children[i];
+                    }
+                }
+                if (!create) {
+                    return null;
+                }
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = key;
+                children[children.length - 1] = new Node();
+                return children[children.length - 1];
+            }
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.splunk.splunkjenkins.listeners;
 
 import com.splunk.splunkjenkins.SplunkJenkinsInstallation;
+import com.splunk.splunkjenkins.utils.ListenerExecutor;
 import com.splunk.splunkjenkins.utils.SplunkLogService;
 import hudson.Extension;
 import hudson.model.Computer;
@@ -56,13 +57,18 @@ public class LoggingComputerListener extends ComputerListener {
         taskListener.getLogger().flush();
     }
 
-    private void updateStatus(Computer c, String eventSource) {
+    private void updateStatus(final Computer c, final String eventSource) {
         if (SplunkJenkinsInstallation.get().isEventDisabled(SLAVE_INFO)) {
             return;
         }
-        Map slaveInfo = getComputerStatus(c);
-        slaveInfo.put(EVENT_CAUSED_BY, eventSource);
-        SplunkLogService.getInstance().send(slaveInfo, SLAVE_INFO);
+        ListenerExecutor.execute(c.getName(), new Runnable() {
+            @Override
+            public void run() {
+                Map slaveInfo = getComputerStatus(c);
+                slaveInfo.put(EVENT_CAUSED_BY, eventSource);
+                SplunkLogService.getInstance().send(slaveInfo, SLAVE_INFO);
+            }
+        });
     }
 
 }
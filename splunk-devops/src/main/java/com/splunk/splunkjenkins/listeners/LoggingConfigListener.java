@@ -1,5 +1,6 @@
 package com.splunk.splunkjenkins.listeners;
 
+import com.google.common.hash.Hashing;
 import com.splunk.splunkjenkins.SplunkJenkinsInstallation;
 import com.splunk.splunkjenkins.utils.SplunkLogService;
 import hudson.Extension;
@@ -9,10 +10,12 @@ import hudson.model.Saveable;
 import hudson.model.User;
 import hudson.model.listeners.SaveableListener;
 import jenkins.model.Jenkins;
-import org.apache.commons.codec.digest.DigestUtils;
 
 import java.io.IOException;
-import java.util.WeakHashMap;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -20,13 +23,16 @@ import java.util.regex.PatternSyntaxException;
 
 import static com.splunk.splunkjenkins.Constants.JENKINS_CONFIG_PREFIX;
 import static com.splunk.splunkjenkins.model.EventType.JENKINS_CONFIG;
+import static com.splunk.splunkjenkins.utils.UnifiedDiff.diff;
+import static com.splunk.splunkjenkins.utils.UnifiedDiff.lines;
 import static com.splunk.splunkjenkins.utils.LogEventHelper.getRelativeJenkinsHomePath;
 import static com.splunk.splunkjenkins.utils.LogEventHelper.getUserName;
 import static com.splunk.splunkjenkins.utils.LogEventHelper.logUserAction;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * record jenkins config and job changes
- * send config content to splunk
+ * send config content to splunk, or the unified diff against the previous version if sendDiff is enabled
  */
 
 @edu.umd.cs.findbugs.annotations.SuppressFBWarnings("VA_FORMAT_STRING_USES_NEWLINE")
@@ -37,6 +43,14 @@ public class LoggingConfigListener extends SaveableListener {
     //queue.xml or build/*/config.xml
     private static final String IGNORE_CONFIG_CHANGE_PATTERN = "(?:queue|nodeMonitors|UpdateCenter|global-build-stats).xml|" +
             "/(?:fingerprint|builds|config-history)/.*?xml";
+    private static final int MAX_TRACKED_FILES = Integer.getInteger(LoggingConfigListener.class.getName() + ".maxTrackedFiles", 1024);
+    private static final boolean SEND_DIFF = Boolean.getBoolean(LoggingConfigListener.class.getName() + ".sendDiff");
+    // bigger files are always sent in full, their content is not kept for diff
+    private static final long MAX_DIFF_FILE_SIZE = Long.getLong(LoggingConfigListener.class.getName() + ".maxDiffFileSize", 512 * 1024);
+    // total size of the contents kept for diff, the content of least recently changed files is dropped first
+    private static final long MAX_RETAINED_BYTES = Long.getLong(LoggingConfigListener.class.getName() + ".maxRetainedBytes", 16L << 20);
+    private static final int MAX_DIFF_EDITS = 1000;
+    private static final int DIFF_CONTEXT = 3;
     /**
      * Regex pattern for configuration files to ignore (queue.xml, nodeMonitors, build artifacts, etc.)
      * Can be overridden with system property splunkins.ignoreConfigChangePattern
@@ -54,13 +68,25 @@ public class LoggingConfigListener extends SaveableListener {
         IGNORED = ignorePattern;
     }
 
-    private WeakHashMap cached = new WeakHashMap(512);
+    // bytes of the contents kept in lastStates, guarded by lastStates
+    private long retainedBytes = 0;
+    // the last sent state keyed by config path, least recently changed ones are evicted
+    private final LinkedHashMap<String, ConfigState> lastStates = new LinkedHashMap<String, ConfigState>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ConfigState> eldest) {
+            if (size() > MAX_TRACKED_FILES) {
+                retainedBytes -= eldest.getValue().size;
+                return true;
+            }
+            return false;
+        }
+    };
 
     /**
      * {@inheritDoc}
      *
      * Captures Jenkins configuration changes and sends them to Splunk for audit trail
-     * purposes. Uses MD5 checksums to deduplicate events and prevent duplicate logging
+     * purposes. Compares the checksum of the file with the last sent one to prevent duplicate logging
      * when configuration is saved multiple times. Ignores changes from system users
      * and certain configuration files (queue, node monitors, etc).
      */
@@ -89,23 +115,90 @@ public class LoggingConfigListener extends SaveableListener {
         if ("SYSTEM".equals(Jenkins.getAuthentication().getName())) {
             LOGGER.log(Level.FINE, "{0} is changed by system", configPath);
             //ignore changes made by daemons or background jobs
+            if (SEND_DIFF) {
+                //the next change is sent in full, so the diff does not include the system changes
+                synchronized (lastStates) {
+                    ConfigState removed = lastStates.remove(configPath);
+                    if (removed != null) {
+                        retainedBytes -= removed.size;
+                    }
+                }
+            }
             return;
         }
         try {
-            String configContent = file.asString();
-            String checkSum = DigestUtils.md5Hex(configPath + configContent);
-            if (cached.containsKey(checkSum)) {
+            // read once, the checksum is computed from the same bytes as the sent content
+            byte[] bytes = Files.readAllBytes(file.getFile().toPath());
+            String checkSum = Hashing.murmur3_128().newHasher()
+                    .putUnencodedChars(configPath)
+                    .putBytes(bytes)
+                    .hash().toString();
+            ConfigState previous;
+            synchronized (lastStates) {
+                previous = lastStates.get(configPath);
+            }
+            if (previous != null && previous.checkSum.equals(checkSum)) {
                 //Save a job can trigger multiple SaveableListener, depends on jenkins versions
                 // e.g. AbstractProject.submit may call setters which can trigger save()
                 return;
             }
-            cached.put(checkSum, 0);
+            // jenkins writes the xml files in UTF-8
+            String configContent = new String(bytes, UTF_8);
+            boolean keepContent = SEND_DIFF && bytes.length <= MAX_DIFF_FILE_SIZE;
+            synchronized (lastStates) {
+                putState(configPath, keepContent ? new ConfigState(checkSum, configContent, bytes.length)
+                        : new ConfigState(checkSum, null, 0));
+            }
+            String message = configContent;
+            if (keepContent && previous != null && previous.content != null) {
+                String configDiff = diff(relativePath, relativePath, lines(previous.content), lines(configContent),
+                        DIFF_CONTEXT, MAX_DIFF_EDITS);
+                if (configDiff != null) {
+                    message = configDiff;
+                }
+            }
             String sourceName = JENKINS_CONFIG_PREFIX + relativePath;
             String userName = getUserName();
             String comment = String.format(XML_COMMENT, userName);
-            SplunkLogService.getInstance().send(comment + configContent, JENKINS_CONFIG, sourceName);
+            SplunkLogService.getInstance().send(comment + message, JENKINS_CONFIG, sourceName);
         } catch (IOException e) {
             //just ignore
         }
     }
+
+    /**
+     * Stores the state, then drops the content of least recently changed files until the retained bytes fit
+     * the limit, the caller must hold the lock of lastStates
+     */
+    private void putState(String configPath, ConfigState state) {
+        ConfigState replaced = lastStates.put(configPath, state);
+        if (replaced != null) {
+            retainedBytes -= replaced.size;
+        }
+        retainedBytes += state.size;
+        Iterator<Map.Entry<String, ConfigState>> iterator = lastStates.entrySet().iterator();
+        while (retainedBytes > MAX_RETAINED_BYTES && iterator.hasNext()) {
+            Map.Entry<String, ConfigState> entry = iterator.next();
+            ConfigState eldest = entry.getValue();
+            if (eldest.content != null) {
+                // the checksum is still kept to skip repeated saves, the next change is sent in full
+                retainedBytes -= eldest.size;
+                entry.setValue(new ConfigState(eldest.checkSum, null, 0));
+            }
+        }
+    }
+
+    private static class ConfigState {
+        final String checkSum;
+        // only kept if diff is enabled
+        final String content;
+        // bytes of the content, 0 if it is not kept
+        final long size;
+
+        ConfigState(String checkSum, String content, long size) {
+            this.checkSum = checkSum;
+            this.content = content;
+            this.size = size;
+        }
+    }
 }
@@ -1,11 +1,13 @@
 package com.splunk.splunkjenkins.listeners;
 
+import com.splunk.splunkjenkins.utils.ListenerExecutor;
 import com.splunk.splunkjenkins.utils.SplunkLogService;
 import hudson.Extension;
 import hudson.model.Item;
 import hudson.model.listeners.ItemListener;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 import static com.splunk.splunkjenkins.utils.LogEventHelper.getRelativeJenkinsHomePath;
 import static com.splunk.splunkjenkins.utils.LogEventHelper.getUserName;
@@ -17,6 +19,8 @@ import static com.splunk.splunkjenkins.utils.LogEventHelper.logUserAction;
  */
 @Extension
 public class LoggingItemListener extends ItemListener {
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(Long.getLong(LoggingItemListener.class.getName() + ".shutdownTimeout", 10));
+
     /** {@inheritDoc} */
     @Override
     public void onCreated(Item item) {
@@ -64,7 +68,14 @@ public class LoggingItemListener extends ItemListener {
     /** {@inheritDoc} */
     @Override
     public void onBeforeShutdown() {
-        SplunkLogService.getInstance().stopWorker();
-        SplunkLogService.getInstance().releaseConnection();
+        try {
+            long start = System.currentTimeMillis();
+            // the events built by listeners are queued first
+            ListenerExecutor.shutdown(SHUTDOWN_TIMEOUT);
+            long remaining = SHUTDOWN_TIMEOUT - (System.currentTimeMillis() - start);
+            SplunkLogService.getInstance().shutdown(Math.max(0, remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
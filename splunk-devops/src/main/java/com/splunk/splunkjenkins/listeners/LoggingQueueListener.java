@@ -1,19 +1,22 @@
 package com.splunk.splunkjenkins.listeners;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.splunk.splunkjenkins.Constants;
+import com.splunk.splunkjenkins.MasterStatsSampler;
 import com.splunk.splunkjenkins.SplunkJenkinsInstallation;
+import com.splunk.splunkjenkins.utils.ListenerExecutor;
+import com.splunk.splunkjenkins.utils.LongTtlMap;
+import com.splunk.splunkjenkins.utils.QueuePhaseAggregator;
 import com.splunk.splunkjenkins.utils.SplunkLogService;
 import hudson.Extension;
+import hudson.model.Label;
 import hudson.model.Queue;
 import hudson.model.queue.QueueListener;
 
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static com.splunk.splunkjenkins.model.EventType.QUEUE_INFO;
-import static com.splunk.splunkjenkins.utils.LogEventHelper.getMasterStats;
 
 /**
  * <pre>{@code from jenkins javadoc
@@ -31,11 +34,15 @@ import static com.splunk.splunkjenkins.utils.LogEventHelper.getMasterStats;
 @SuppressWarnings("unused")
 @Extension
 public class LoggingQueueListener extends QueueListener {
-    // Cache to keep track of queue time
-    private final static Cache<Long, Float> cache = CacheBuilder.newBuilder()
-            .maximumSize(3000).build();
+    private static final int MAX_TRACKED_ITEMS = Integer.getInteger(LoggingQueueListener.class.getName() + ".maxTrackedItems", 65536);
+    // a blocked item may wait for a long time, entries of the items which never left the queue are expired
+    private static final long PHASE_TTL = TimeUnit.HOURS.toMillis(Long.getLong(LoggingQueueListener.class.getName() + ".phaseTtlHours", 24));
+    // read by the run listener when the build is started and completed
+    private static final long QUEUE_TIME_TTL = TimeUnit.HOURS.toMillis(Long.getLong(LoggingQueueListener.class.getName() + ".queueTimeTtlHours", 72));
+    // queue id to queue time in seconds, stored as float bits
+    private final static LongTtlMap queueTimes = new LongTtlMap(QUEUE_TIME_TTL, MAX_TRACKED_ITEMS);
     //To keep track of events timestamp for the queue phases like waiting, blocked and buildable
-    private final static ConcurrentHashMap<Long, Long> queuePhase = new ConcurrentHashMap<Long, Long>();
+    private final static LongTtlMap queuePhase = new LongTtlMap(PHASE_TTL, MAX_TRACKED_ITEMS);
     // default is 3 question masks ???, see also hudson/model/Messages
     // due to access policy hudson/model/Messages must not be used, hard code it here
     private final static String QUEUE_UNKNOWN_MSG = "???";
@@ -43,7 +50,7 @@ public class LoggingQueueListener extends QueueListener {
     /** {@inheritDoc} */
     @Override
     public void onEnterWaiting(Queue.WaitingItem wi) {
-        sendToSplunkOnEnter(wi.task, wi.getId(), Constants.ENQUEUE_TAG_NAME);
+        sendToSplunkOnEnter(wi, Constants.ENQUEUE_TAG_NAME);
     }
 
     /** {@inheritDoc} */
@@ -53,14 +60,13 @@ public class LoggingQueueListener extends QueueListener {
         if (QUEUE_UNKNOWN_MSG.equals(causeOfWaiting)) {
             causeOfWaiting="waiting probably caused by quiet period";
         }
-        sendToSplunkOnLeft(wi.task, wi.getId(),
-                Constants.WAITING_PHASE_NAME, causeOfWaiting, wi.getInQueueSince());
+        sendToSplunkOnLeft(wi, Constants.WAITING_PHASE_NAME, causeOfWaiting);
     }
 
     /** {@inheritDoc} */
     @Override
     public void onEnterBlocked(Queue.BlockedItem bi) {
-        sendToSplunkOnEnter(bi.task, bi.getId(), Constants.BLOCKED_PHASE_NAME);
+        sendToSplunkOnEnter(bi, Constants.BLOCKED_PHASE_NAME);
     }
 
     /** {@inheritDoc} */
@@ -70,14 +76,13 @@ public class LoggingQueueListener extends QueueListener {
         if (QUEUE_UNKNOWN_MSG.equals(causeOfBlocked)) {
             causeOfBlocked="waiting probably caused by QueueTaskDispatcher";
         }
-        sendToSplunkOnLeft(bi.task, bi.getId(),
-                Constants.BLOCKED_PHASE_NAME, causeOfBlocked, bi.getInQueueSince());
+        sendToSplunkOnLeft(bi, Constants.BLOCKED_PHASE_NAME, causeOfBlocked);
     }
 
     /** {@inheritDoc} */
     @Override
     public void onEnterBuildable(Queue.BuildableItem bi) {
-        sendToSplunkOnEnter(bi.task, bi.getId(), Constants.BUILDABLE_PHASE_NAME);
+        sendToSplunkOnEnter(bi, Constants.BUILDABLE_PHASE_NAME);
 
     }
 
@@ -88,19 +93,17 @@ public class LoggingQueueListener extends QueueListener {
         if (QUEUE_UNKNOWN_MSG.equals(causeOfWaiting)) {
             causeOfWaiting="waiting probably caused by lack of free executors";
         }
-        sendToSplunkOnLeft(bi.task, bi.getId(),
-                Constants.BUILDABLE_PHASE_NAME, causeOfWaiting, bi.getInQueueSince());
+        sendToSplunkOnLeft(bi, Constants.BUILDABLE_PHASE_NAME, causeOfWaiting);
     }
 
     /** {@inheritDoc} */
     @Override
     public void onLeft(Queue.LeftItem li) {
-        Float queueTime = sendToSplunkOnLeft(li.task, li.getId(),
-                Constants.DEQUEUE_TAG_NAME, li.getWhy(), li.getInQueueSince());
+        Float queueTime = sendToSplunkOnLeft(li, Constants.DEQUEUE_TAG_NAME, li.getWhy());
         //Removing it from the map
-        queuePhase.remove(li.getId());
-        //Storing it in the cache to access it later
-        cache.put(li.getId(), queueTime);
+        queuePhase.remove(li.getId(), 0);
+        //Storing it to access it later
+        queueTimes.put(li.getId(), Float.floatToIntBits(queueTime));
 
     }
 
@@ -118,6 +121,11 @@ public class LoggingQueueListener extends QueueListener {
         }
     }
 
+    private String getLabel(Queue.Item item) {
+        Label label = item.getAssignedLabel();
+        return label == null ? "none" : label.getExpression();
+    }
+
     /**
      * Gets the queue time for a given queue ID
      *
@@ -125,11 +133,9 @@ public class LoggingQueueListener extends QueueListener {
      * @return the queue time in seconds, or 0 if not found
      */
     public static Float getQueueTime(Long Id) {
-        Float queueTime = cache.getIfPresent(Id);
-        if (queueTime == null) {
-            //the queue has been garbage collected
-            queueTime = 0f;
-        }
+        long bits = queueTimes.get(Id, -1);
+        //the queue has been expired or evicted
+        Float queueTime = bits == -1 ? 0f : Float.intBitsToFloat((int) bits);
         return queueTime;
     }
 
@@ -142,7 +148,8 @@ public class LoggingQueueListener extends QueueListener {
      * @return generated events to be published to splunk
      */
     private Map getCommonEvents(String type, Long id, String itemName) {
-        Map event = getMasterStats();
+        // copied from the periodic snapshot, called from the ListenerExecutor task which does not hold the queue lock
+        Map event = MasterStatsSampler.getSnapshot().toMap();
         event.put("type", type);
         event.put(Constants.TAG, Constants.QUEUE_TAG_NAME);
         event.put("queue_id", id);
@@ -154,27 +161,32 @@ public class LoggingQueueListener extends QueueListener {
      * Send build queue meta data to splunk on entering to any of the queue phases
      * like buildable, blocked and waiting
      *
-     * @param task      task associated with a queue
-     * @param id        id of the queue
+     * @param item      the queue item
      * @param eventType type of the queue phase
      */
-    private void sendToSplunkOnEnter(Queue.Task task, Long id, String eventType) {
+    private void sendToSplunkOnEnter(Queue.Item item, String eventType) {
         if (SplunkJenkinsInstallation.get().isEventDisabled(QUEUE_INFO)) {
             return;
         }
-        String name = getTaskName(task);
+        String name = getTaskName(item.task);
         if (SplunkJenkinsInstallation.get().isJobIgnored(name)) {
             return;
         }
+        long id = item.getId();
         queuePhase.put(id, System.currentTimeMillis());
+        if (QueuePhaseAggregator.isEnabled()) {
+            // entering the queue is entering the waiting phase
+            String phase = eventType.equals(Constants.ENQUEUE_TAG_NAME) ? Constants.WAITING_PHASE_NAME : eventType;
+            QueuePhaseAggregator.getInstance().entered(getLabel(item), phase);
+            return;
+        }
         String eventTypeEnqueue;
         if (eventType.equals(Constants.ENQUEUE_TAG_NAME)) {
             eventTypeEnqueue = eventType;
         } else {
             eventTypeEnqueue = Constants.ENQUEUE_TAG_NAME + "_" + eventType;
         }
-        Map event = getCommonEvents(eventTypeEnqueue, id, name);
-        SplunkLogService.getInstance().send(event, QUEUE_INFO);
+        send(eventTypeEnqueue, id, name, null, 0, null);
 
     }
 
@@ -182,18 +194,18 @@ public class LoggingQueueListener extends QueueListener {
      * Send queue time and other meta data to splunk on leaving from any of the
      * queue phases like buildable, blocked and waiting
      *
-     * @param task         task associated with a queue
-     * @param id           id of the queue
+     * @param item         the queue item
      * @param eventType    type of the queue phase
      * @param message      message of the slave available in the queue
-     * @param inQueueSince time
-     * @return
+     * @return the duration of the phase in seconds
      */
-    private Float sendToSplunkOnLeft(Queue.Task task, Long id, String eventType, String message, Long inQueueSince) {
+    private Float sendToSplunkOnLeft(Queue.Item item, String eventType, String message) {
         if (SplunkJenkinsInstallation.get().isEventDisabled(QUEUE_INFO)) {
             return 0f;
         }
-        String name = getTaskName(task);
+        long id = item.getId();
+        long inQueueSince = item.getInQueueSince();
+        String name = getTaskName(item.task);
         if (SplunkJenkinsInstallation.get().isJobIgnored(name)) {
             return 0f;
         }
@@ -214,14 +226,42 @@ public class LoggingQueueListener extends QueueListener {
             queueTimeDuration = getDurationInQueuePhase(id);
         }
 
-        Map event = getCommonEvents(eventTypeDequeue, id, name);
-        event.put(durationName, queueTimeDuration);
-        event.put("message", message);
-
-        SplunkLogService.getInstance().send(event, QUEUE_INFO);
+        if (QueuePhaseAggregator.isEnabled()) {
+            String phase = eventType.equals(Constants.DEQUEUE_TAG_NAME) ? Constants.QUEUE_TAG_NAME : eventType;
+            QueuePhaseAggregator.getInstance().left(getLabel(item), phase, queueTimeDuration);
+            if (!QueuePhaseAggregator.isOutlier(queueTimeDuration)) {
+                return queueTimeDuration;
+            }
+        }
+        send(eventTypeDequeue, id, name, durationName, queueTimeDuration, message);
         return queueTimeDuration;
     }
 
+    /**
+     * Builds and sends the queue event off the queue thread
+     *
+     * @param type         type of the queue phase
+     * @param id           identifier of the queue
+     * @param itemName     job name associated with the queue
+     * @param durationName the name of the duration field, null if no duration
+     * @param duration     the duration in seconds
+     * @param message      the message of the queue item
+     */
+    private void send(final String type, final Long id, final String itemName, final String durationName,
+                      final float duration, final String message) {
+        ListenerExecutor.execute(itemName, new Runnable() {
+            @Override
+            public void run() {
+                Map event = getCommonEvents(type, id, itemName);
+                if (durationName != null) {
+                    event.put(durationName, duration);
+                    event.put("message", message);
+                }
+                SplunkLogService.getInstance().send(event, QUEUE_INFO);
+            }
+        });
+    }
+
     /**
      * Calculate the time spent in a particular phase
      *
@@ -229,9 +269,9 @@ public class LoggingQueueListener extends QueueListener {
      * @return time duration spent in a particular phase
      */
     private Float getDurationInQueuePhase(Long id) {
-        Long startTime = queuePhase.get(id);
+        long startTime = queuePhase.get(id, -1);
         Float durationInPhase;
-        if (startTime == null) {
+        if (startTime == -1) {
             //the queue has been garbage collected or jenkins has restarted
             durationInPhase = 0f;
         } else {
@@ -246,12 +286,26 @@ public class LoggingQueueListener extends QueueListener {
     }
 
     /**
-     * Invalidates/expires a queue entry from the cache
+     * @return the size and the expired and evicted counts of the tracked queue items
+     */
+    public static Map<String, Object> getTrackingStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queue_phase_tracked", queuePhase.size());
+        stats.put("queue_phase_expired", queuePhase.getExpiredCount());
+        stats.put("queue_phase_evicted", queuePhase.getEvictedCount());
+        stats.put("queue_time_tracked", queueTimes.size());
+        stats.put("queue_time_expired", queueTimes.getExpiredCount());
+        stats.put("queue_time_evicted", queueTimes.getEvictedCount());
+        return stats;
+    }
+
+    /**
+     * Removes the queue time of a queue entry
      *
      * @param Id the queue identifier to expire
      */
     public static void expire(Long Id) {
-        cache.invalidate(Id);
+        queueTimes.remove(Id, 0);
     }
 
 }
@@ -6,6 +6,7 @@ import com.splunk.splunkjenkins.model.CoverageMetricsAdapter;
 import com.splunk.splunkjenkins.model.LoggingJobExtractor;
 import com.splunk.splunkjenkins.SplunkJenkinsInstallation;
 import com.splunk.splunkjenkins.UserActionDSL;
+import com.splunk.splunkjenkins.utils.ListenerExecutor;
 import com.splunk.splunkjenkins.utils.SplunkLogService;
 import com.splunk.splunkjenkins.utils.TestCaseResultUtils;
 import hudson.Extension;
@@ -40,63 +41,74 @@ public class LoggingRunListener extends RunListener<Run> {
 
     /** {@inheritDoc} */
     @Override
-    public void onStarted(Run run, TaskListener listener) {
+    public void onStarted(final Run run, TaskListener listener) {
         if (SplunkJenkinsInstallation.get().isEventDisabled(BUILD_EVENT) ||
                 SplunkJenkinsInstallation.get().isJobIgnored(run.getUrl())) {
             return;
         }
-        Map<String, Object> event = getCommonBuildInfo(run, false);
-        event.put("type", "started");
-        String sourceName = SplunkJenkinsInstallation.get().getMetadataSource() + JENKINS_SOURCE_SEP + JOB_EVENT_TAG_NAME;
-        SplunkLogService.getInstance().send(event, BUILD_EVENT, sourceName);
-        //audit the start action
-        if (event.get(Constants.USER_NAME_KEY) != null) {
-            logUserAction((String) event.get(Constants.USER_NAME_KEY), Messages.audit_start_job(event.get(Constants.BUILD_ID)));
-        }
-        updateSlaveInfoAsync((String) event.get(NODE_NAME_KEY));
+        final RunState state = new RunState(run);
+        ListenerExecutor.execute(run.getUrl(), new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Object> event = getCommonBuildInfo(run, false, state);
+                event.put("type", "started");
+                String sourceName = SplunkJenkinsInstallation.get().getMetadataSource() + JENKINS_SOURCE_SEP + JOB_EVENT_TAG_NAME;
+                SplunkLogService.getInstance().send(event, BUILD_EVENT, sourceName);
+                //audit the start action
+                if (event.get(Constants.USER_NAME_KEY) != null) {
+                    logUserAction((String) event.get(Constants.USER_NAME_KEY), Messages.audit_start_job(event.get(Constants.BUILD_ID)));
+                }
+                updateSlaveInfoAsync((String) event.get(NODE_NAME_KEY));
+            }
+        });
     }
 
     /** {@inheritDoc} */
     @Override
-    public void onCompleted(Run run, @NonNull TaskListener listener) {
+    public void onCompleted(final Run run, @NonNull TaskListener listener) {
         if (SplunkJenkinsInstallation.get().isEventDisabled(BUILD_EVENT) ||
                 SplunkJenkinsInstallation.get().isJobIgnored(run.getUrl())) {
             return;
         }
-        Map<String, Object> event = getCommonBuildInfo(run, true);
-        event.put("type", "completed");
-        float duration = getRunDuration(run);
-        event.put("job_duration", duration);
-        event.put(JOB_RESULT, "" + run.getResult());
-        Map testSummary = TestCaseResultUtils.getSummary(run);
-        if (!testSummary.isEmpty()) {
-            event.put("test_summary", testSummary);
-        }
-        //get coverage summary
-        Map coverage = CoverageMetricsAdapter.getMetrics(run);
-        if (!coverage.isEmpty()) {
-            event.put("coverage", coverage);
-        }
-        appendScm(event, run);
-        if (run instanceof AbstractBuild) {
-            AbstractBuild build = (AbstractBuild) run;
-            List<String> changelog = getChangeLog(build);
-            if (!changelog.isEmpty()) {
-                event.put("changelog", changelog);
+        final RunState state = new RunState(run);
+        final float duration = getRunDuration(run);
+        ListenerExecutor.execute(run.getUrl(), new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Object> event = getCommonBuildInfo(run, true, state);
+                event.put("type", "completed");
+                event.put("job_duration", duration);
+                event.put(JOB_RESULT, "" + run.getResult());
+                Map testSummary = TestCaseResultUtils.getSummary(run);
+                if (!testSummary.isEmpty()) {
+                    event.put("test_summary", testSummary);
+                }
+                //get coverage summary
+                Map coverage = CoverageMetricsAdapter.getMetrics(run);
+                if (!coverage.isEmpty()) {
+                    event.put("coverage", coverage);
+                }
+                appendScm(event, run);
+                if (run instanceof AbstractBuild) {
+                    AbstractBuild build = (AbstractBuild) run;
+                    List<String> changelog = getChangeLog(build);
+                    if (!changelog.isEmpty()) {
+                        event.put("changelog", changelog);
+                    }
+                }
+                String sourceName = SplunkJenkinsInstallation.get().getMetadataSource(JOB_EVENT_TAG_NAME);
+                SplunkLogService.getInstance().send(event, BUILD_EVENT, sourceName);
+                if (state.onExecutor) {
+                    //JdkSplunkLogHandler.LogHolder.getSlaveLog(run.getExecutor().getOwner());
+                    updateSlaveInfoAsync((String) event.get(NODE_NAME_KEY));
+                }
+                //remove cached values
+                LoggingQueueListener.expire(run.getQueueId());
+                recordAbortAction(run);
             }
-        }
-        String sourceName = SplunkJenkinsInstallation.get().getMetadataSource(JOB_EVENT_TAG_NAME);
-        SplunkLogService.getInstance().send(event, BUILD_EVENT, sourceName);
-        //custom event processing dsl
+        });
+        //custom event processing dsl, the listener is closed once the callback returns
         postJobAction.perform(run, listener, SplunkJenkinsInstallation.get().getCode());
-
-        if (run.getExecutor() != null) {
-            //JdkSplunkLogHandler.LogHolder.getSlaveLog(run.getExecutor().getOwner());
-            updateSlaveInfoAsync((String) event.get(NODE_NAME_KEY));
-        }
-        //remove cached values
-        LoggingQueueListener.expire(run.getQueueId());
-        recordAbortAction(run);
     }
 
     /**
@@ -133,18 +145,17 @@ public class LoggingRunListener extends RunListener<Run> {
      *
      * @param run Jenkins job run
      * @param completed whether the build has completed
+     * @param state the state captured in the listener callback
      * @return Map containing common build metadata
      */
-    private Map<String, Object> getCommonBuildInfo(Run run, boolean completed) {
+    private Map<String, Object> getCommonBuildInfo(Run run, boolean completed, RunState state) {
         Map<String, Object> event = new HashMap();
         event.put(Constants.TAG, JOB_EVENT_TAG_NAME);
         event.put("build_number", run.getNumber());
         event.put("trigger_by", getBuildCauses(run));
         event.put(Constants.USER_NAME_KEY, getTriggerUserName(run));
-        long queueId = run.getQueueId();
-        Float queueTime = LoggingQueueListener.getQueueTime(queueId);
-        event.put("queue_time", queueTime);
-        event.put("queue_id", queueId);
+        event.put("queue_time", state.queueTime);
+        event.put("queue_id", run.getQueueId());
         event.put(Constants.BUILD_ID, run.getUrl());
         event.put("upstream", getUpStreamURL(run));
         event.put("job_started_at", run.getTimestampString2());
@@ -157,23 +168,8 @@ public class LoggingRunListener extends RunListener<Run> {
             String jobType = ((Describable) run.getParent()).getDescriptor().getDisplayName();
             event.put("job_type", jobType);
         }
-        Executor executor = run.getExecutor();
-        String nodeName = "";
-        String label = null;
-        if (executor != null) {
-            Node execNode = executor.getOwner().getNode();
-            if (execNode != null) {
-                label = execNode.getLabelString();
-            }
-            nodeName = executor.getOwner().getName();
-            if (StringUtils.isEmpty(nodeName)) {
-                nodeName = Constants.BUILT_IN_NODE;
-            }
-        } else if (run instanceof AbstractBuild) {
-            nodeName = ((AbstractBuild) run).getBuiltOnStr();
-        }
-        event.put("label", label);
-        event.put(NODE_NAME_KEY, nodeName);
+        event.put("label", state.label);
+        event.put(NODE_NAME_KEY, state.nodeName);
         for (LoggingJobExtractor extendListener : LoggingJobExtractor.canApply(run)) {
             try {
                 Map<String, Object> extend = extendListener.extract(run, completed);
@@ -229,4 +225,36 @@ public class LoggingRunListener extends RunListener<Run> {
         }
         return changelog;
     }
+
+    /**
+     * The state of a run which is changed or released once the listener callback returns
+     */
+    private static class RunState {
+        final String nodeName;
+        final String label;
+        final Float queueTime;
+        final boolean onExecutor;
+
+        RunState(Run run) {
+            queueTime = LoggingQueueListener.getQueueTime(run.getQueueId());
+            Executor executor = run.getExecutor();
+            String name = "";
+            String nodeLabel = null;
+            if (executor != null) {
+                Node execNode = executor.getOwner().getNode();
+                if (execNode != null) {
+                    nodeLabel = execNode.getLabelString();
+                }
+                name = executor.getOwner().getName();
+                if (StringUtils.isEmpty(name)) {
+                    name = Constants.BUILT_IN_NODE;
+                }
+            } else if (run instanceof AbstractBuild) {
+                name = ((AbstractBuild) run).getBuiltOnStr();
+            }
+            nodeName = name;
+            label = nodeLabel;
+            onExecutor = executor != null;
+        }
+    }
 }
@@ -0,0 +1,163 @@
+package com.splunk.splunkjenkins.model;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Console capture policy for the jobs whose build url matches the pattern.
+ * One policy per line, the pattern is followed by key=value settings, for example:
+ * <pre>
+ * ^job/noisy-job/ lines_per_second=200 max_bytes=10485760 head=500 tail=500 sample=0.2
+ * </pre>
+ * Settings which are not specified are unlimited.
+ *
+ * @since 1.11.3
+ */
+public class ConsoleCapturePolicy implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final Pattern jobPattern;
+    // zero means unlimited
+    private long linesPerSecond;
+    private long maxBytes;
+    private int headLines;
+    private int tailLines;
+    private double sampleRatio = 1;
+
+    /**
+     * Creates a policy without limits
+     *
+     * @param jobPattern the pattern matching build url
+     */
+    public ConsoleCapturePolicy(Pattern jobPattern) {
+        this.jobPattern = jobPattern;
+    }
+
+    /**
+     * Parses the policies, one policy per line, empty line or line starting with # is ignored
+     *
+     * @param text the policies text
+     * @return parsed policies
+     * @throws IllegalArgumentException if the text contains invalid pattern or setting
+     */
+    public static List<ConsoleCapturePolicy> parse(String text) throws IllegalArgumentException {
+        if (StringUtils.isBlank(text)) {
+            return Collections.emptyList();
+        }
+        List<ConsoleCapturePolicy> policies = new ArrayList<>();
+        for (String line : text.split("[\\r\\n]+")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("[\\s,]+");
+            ConsoleCapturePolicy policy;
+            try {
+                policy = new ConsoleCapturePolicy(Pattern.compile(tokens[0]));
+            } catch (PatternSyntaxException ex) {
+                throw new IllegalArgumentException("invalid job pattern " + tokens[0] + ", " + ex.getDescription());
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                String[] pair = tokens[i].split("=", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("invalid setting " + tokens[i] + ", expected key=value");
+                }
+                policy.set(pair[0], pair[1]);
+            }
+            policies.add(policy);
+        }
+        return policies;
+    }
+
+    private void set(String key, String value) {
+        try {
+            switch (key) {
+                case "lines_per_second":
+                    linesPerSecond = Long.parseLong(value);
+                    break;
+                case "max_bytes":
+                    maxBytes = Long.parseLong(value);
+                    break;
+                case "head":
+                    headLines = Integer.parseInt(value);
+                    break;
+                case "tail":
+                    tailLines = Integer.parseInt(value);
+                    break;
+                case "sample":
+                    sampleRatio = Double.parseDouble(value);
+                    if (sampleRatio <= 0 || sampleRatio > 1) {
+                        throw new IllegalArgumentException("sample must be in range (0, 1], got " + value);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown setting " + key);
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid number " + value + " for " + key);
+        }
+    }
+
+    /**
+     * @param buildUrl the build url or console source
+     * @return true if the policy applies to the build
+     */
+    public boolean matches(String buildUrl) {
+        return jobPattern.matcher(buildUrl).find();
+    }
+
+    /**
+     * @return max lines per second, 0 means unlimited
+     */
+    public long getLinesPerSecond() {
+        return linesPerSecond;
+    }
+
+    /**
+     * @return max bytes per build, 0 means unlimited
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the number of first lines always kept
+     */
+    public int getHeadLines() {
+        return headLines;
+    }
+
+    /**
+     * @return the number of last lines always kept
+     */
+    public int getTailLines() {
+        return tailLines;
+    }
+
+    /**
+     * @return the ratio of lines to keep, 1 means no sampling
+     */
+    public double getSampleRatio() {
+        return sampleRatio;
+    }
+
+    /**
+     * Puts the settings into the map for summary event
+     *
+     * @param map the summary event
+     */
+    public void describe(Map<String, Object> map) {
+        map.put("policy_pattern", jobPattern.pattern());
+        map.put("policy_lines_per_second", linesPerSecond);
+        map.put("policy_max_bytes", maxBytes);
+        map.put("policy_head", headLines);
+        map.put("policy_tail", tailLines);
+        map.put("policy_sample", sampleRatio);
+    }
+}
@@ -5,13 +5,17 @@ import com.splunk.splunkjenkins.utils.LogEventHelper;
 import org.apache.commons.lang3.StringUtils;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
-import java.lang.ref.SoftReference;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
 import static com.splunk.splunkjenkins.Constants.EVENT_SOURCE_TYPE;
 import static com.splunk.splunkjenkins.model.EventType.CONSOLE_LOG;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Represents a log event to be sent to Splunk.
@@ -19,12 +23,17 @@ import static com.splunk.splunkjenkins.model.EventType.CONSOLE_LOG;
  */
 public class EventRecord {
     private final static String METADATA_KEYS[] = {"index", "source", EVENT_SOURCE_TYPE};
-    private final static String MESSAGE_CLEARED = "error: message was cleared for memory demand by garbage collector";
     private long time;
     private int retryCount;
     private Object message;
     private EventType eventType;
     private String source;
+    private Runnable ackCallback;
+    private Runnable failCallback;
+    private volatile boolean acknowledged;
+    private boolean released;
+    // the file which holds the byte array message after it was spilled to disk
+    private File spillFile;
 
     /**
      * Creates a new EventRecord with the specified message and event type
@@ -90,34 +99,111 @@ public class EventRecord {
     }
 
     /**
-     * Gets the message content, handling SoftReference-based messages
+     * Gets the message content, byte array message is decoded as UTF-8 text
      *
      * @return the message content
      */
     @NonNull
     public Object getMessage() {
-        if (message instanceof SoftReference) {
-            String text = (String) ((SoftReference) message).get();
-            if (text == null) {
-                text = MESSAGE_CLEARED;
-            }
-            return text;
+        if (isBytes()) {
+            return new String(getMessageBytes(), UTF_8);
         } else {
             return message;
         }
     }
 
     /**
-     * Retrieves the event message as a string, handling SoftReference-based
-     * messages that may have been garbage collected under memory pressure.
+     * Retrieves the event message as a string
      *
-     * @return the message content or a "message was cleared" indicator
+     * @return the message content
      */
     @NonNull
     public String getMessageString() {
         return getMessage().toString();
     }
 
+    /**
+     * Checks whether the message holds UTF-8 encoded text, such as a chunk of file
+     *
+     * @return true if the message is a byte array
+     */
+    public boolean isBytes() {
+        return message instanceof byte[] || spillFile != null;
+    }
+
+    /**
+     * Gets the message as UTF-8 encoded bytes, the byte array message is returned without copy
+     *
+     * @return the message bytes
+     */
+    @NonNull
+    public byte[] getMessageBytes() {
+        if (spillFile != null) {
+            try {
+                return Files.readAllBytes(spillFile.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to read spilled message " + spillFile, e);
+            }
+        } else if (message instanceof byte[]) {
+            return (byte[]) message;
+        }
+        return getMessageString().getBytes(UTF_8);
+    }
+
+    /**
+     * Gets the size of the message held in memory, only byte array and string messages are counted
+     *
+     * @return the payload size in bytes, string length is used for string message
+     */
+    public long getPayloadSize() {
+        if (message instanceof byte[]) {
+            return ((byte[]) message).length;
+        } else if (isString()) {
+            return ((String) message).length();
+        }
+        return 0;
+    }
+
+    /**
+     * Moves the byte array message into a file, so it does not occupy memory while it is queued
+     *
+     * @param dir the directory to hold the file
+     * @return true if the message was spilled
+     * @throws IOException if the file can not be written
+     */
+    public boolean spill(File dir) throws IOException {
+        if (!(message instanceof byte[])) {
+            return false;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can not create directory " + dir);
+        }
+        File file = File.createTempFile("event", ".spill", dir);
+        Files.write(file.toPath(), (byte[]) message);
+        spillFile = file;
+        message = file;
+        return true;
+    }
+
+    /**
+     * Releases the resources held by the message once it is sent or discarded, only the first call takes effect,
+     * so a record which failed to be queued again for retry is not failed twice
+     */
+    public void release() {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+        }
+        if (spillFile != null && !spillFile.delete() && spillFile.exists()) {
+            spillFile.deleteOnExit();
+        }
+        if (!acknowledged && failCallback != null) {
+            failCallback.run();
+        }
+    }
+
     private boolean isString() {
         return (message instanceof String);
     }
@@ -130,6 +216,10 @@ public class EventRecord {
     public String getShortDescription() {
         if (isString()) {
             return "{length:" + ((String) message).length() + " " + StringUtils.substring((String) message, 0, 160) + " ...}";
+        } else if (spillFile != null) {
+            return "{source:" + source + ", length:" + spillFile.length() + " bytes on disk}";
+        } else if (isBytes()) {
+            return "{source:" + source + ", length:" + ((byte[]) message).length + " bytes}";
         } else if (message.getClass().getName().contains("LazyMap")) {
             return "{source:" + source + ", message class is LazyMap}";
         } else {
@@ -229,6 +319,35 @@ public class EventRecord {
         return values;
     }
 
+    /**
+     * Sets the callback which is invoked once Splunk accepted the event
+     *
+     * @param ackCallback the callback
+     */
+    public void setAckCallback(Runnable ackCallback) {
+        this.ackCallback = ackCallback;
+    }
+
+    /**
+     * Sets the callback which is invoked if the event is released without being accepted by Splunk,
+     * such as it was dropped after retries or discarded from a full queue
+     *
+     * @param failCallback the callback
+     */
+    public void setFailCallback(Runnable failCallback) {
+        this.failCallback = failCallback;
+    }
+
+    /**
+     * Invoked by the sender once Splunk accepted the event
+     */
+    public void acknowledge() {
+        acknowledged = true;
+        if (ackCallback != null) {
+            ackCallback.run();
+        }
+    }
+
     /**
      * Checks if the event has been attempted and failed at least once.
      *
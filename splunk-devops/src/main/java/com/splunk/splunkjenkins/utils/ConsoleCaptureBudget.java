@@ -0,0 +1,27 @@
+package com.splunk.splunkjenkins.utils;
+
+/**
+ * The per build budget of a {@link ConsoleCaptureLimiter}, the limiters of pipeline steps running on agents
+ * draw head lines and bytes from the limiter of the build on the controller through a remoting proxy
+ * and report what they dropped once the step is done, so the build sends one summary.
+ */
+public interface ConsoleCaptureBudget {
+    /**
+     * @param lines the number of head lines wanted
+     * @return the number of head lines granted, less than wanted once the head of the build is used up
+     */
+    long acquireHeadLines(long lines);
+
+    /**
+     * @param bytes the number of bytes wanted
+     * @return the number of bytes granted, less than wanted once max bytes of the build is used up
+     */
+    long acquireBytes(long bytes);
+
+    /**
+     * Merges the counts and the tail window of a finished step, the unused allowances are returned
+     *
+     * @param report the report of the step limiter
+     */
+    void report(ConsoleCaptureLimiter.Report report);
+}
@@ -0,0 +1,324 @@
+package com.splunk.splunkjenkins.utils;
+
+import com.splunk.splunkjenkins.model.ConsoleCapturePolicy;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.splunk.splunkjenkins.Constants.TAG;
+import static com.splunk.splunkjenkins.model.EventType.BUILD_EVENT;
+import static com.splunk.splunkjenkins.model.EventType.CONSOLE_LOG;
+
+/**
+ * Applies a {@link ConsoleCapturePolicy} to the console lines of one build.
+ * The decision is made in memory on the writing thread and never blocks the build,
+ * dropped lines are only counted, except the ones which end up in the tail window.
+ * The limiter of a pipeline step on an agent draws head lines and bytes from the limiter of the build
+ * in batches through a {@link ConsoleCaptureBudget}, and reports its counts to it once the step is done,
+ * so head and max bytes apply per build and the build sends one summary. Rate and sampling apply per step.
+ */
+public class ConsoleCaptureLimiter implements ConsoleCaptureBudget {
+    private static final Logger LOG = Logger.getLogger(ConsoleCaptureLimiter.class.getName());
+    // shared by the lines which were sent, only the dropped lines need their text and length
+    private static final TailLine SENT_LINE = new TailLine(null, 0);
+    private static final long HEAD_LINES_BATCH = 100;
+    private static final long MIN_BYTES_BATCH = 64 << 10;
+    private final ConsoleCapturePolicy policy;
+    // the budget of the build, null if this limiter owns it
+    private final ConsoleCaptureBudget budget;
+    // head lines and bytes this limiter may still send, drawn from the budget in batches if it is not the owner
+    private long headAllowance;
+    private long byteAllowance;
+    // the budget granted less than asked, it is not asked again
+    private boolean headExhausted;
+    private boolean bytesExhausted;
+    // the last lines, the text is only kept for dropped lines
+    private final ArrayDeque<TailLine> tail;
+    private long totalLines;
+    private long sentLines;
+    private long sentBytes;
+    private long droppedBytes;
+    private long droppedByRate;
+    private long droppedBySize;
+    private long droppedBySample;
+    private long windowStart;
+    private long windowLines;
+    private double sampleCredit;
+    private boolean finished;
+
+    /**
+     * @param policy the policy to apply
+     */
+    public ConsoleCaptureLimiter(ConsoleCapturePolicy policy) {
+        this(policy, null);
+    }
+
+    /**
+     * @param policy the policy to apply
+     * @param budget the budget of the build owned by another limiter, null to own the budget
+     */
+    public ConsoleCaptureLimiter(ConsoleCapturePolicy policy, ConsoleCaptureBudget budget) {
+        this.policy = policy;
+        this.budget = budget;
+        this.tail = new ArrayDeque<>(Math.min(policy.getTailLines(), 1024) + 1);
+        if (budget == null) {
+            headAllowance = policy.getHeadLines();
+            byteAllowance = policy.getMaxBytes();
+        }
+    }
+
+    /**
+     * @param line the console line
+     * @return true if the line should be sent
+     */
+    public boolean accept(String line) {
+        return accept(line, line.length());
+    }
+
+    /**
+     * @param line   the console line, only kept in memory if it is dropped and may be in the tail window
+     * @param length the length of the line
+     * @return true if the line should be sent
+     */
+    public synchronized boolean accept(String line, long length) {
+        totalLines++;
+        boolean keep = decide(length);
+        if (keep) {
+            sentLines++;
+            sentBytes += length;
+        } else {
+            droppedBytes += length;
+        }
+        if (policy.getTailLines() > 0) {
+            tail.addLast(keep ? SENT_LINE : new TailLine(line, length));
+            if (tail.size() > policy.getTailLines()) {
+                tail.removeFirst();
+            }
+        }
+        return keep;
+    }
+
+    private boolean decide(long length) {
+        if (headAllowance <= 0 && budget != null && policy.getHeadLines() > 0 && !headExhausted) {
+            long granted = acquire(true, HEAD_LINES_BATCH);
+            headAllowance += granted;
+            headExhausted = granted < HEAD_LINES_BATCH;
+        }
+        if (headAllowance > 0) {
+            // head lines are sent even if they exceed max bytes, but they still count
+            headAllowance--;
+            byteAllowance -= length;
+            return true;
+        }
+        if (policy.getMaxBytes() > 0) {
+            if (byteAllowance < length && budget != null && !bytesExhausted) {
+                long wanted = Math.max(length - byteAllowance, Math.max(MIN_BYTES_BATCH, policy.getMaxBytes() / 16));
+                long granted = acquire(false, wanted);
+                byteAllowance += granted;
+                bytesExhausted = granted < wanted;
+            }
+            if (byteAllowance < length) {
+                droppedBySize++;
+                return false;
+            }
+        }
+        if (policy.getLinesPerSecond() > 0) {
+            long now = System.currentTimeMillis();
+            if (now - windowStart >= 1000) {
+                windowStart = now;
+                windowLines = 0;
+            }
+            if (windowLines >= policy.getLinesPerSecond()) {
+                droppedByRate++;
+                return false;
+            }
+            windowLines++;
+        }
+        if (policy.getSampleRatio() < 1) {
+            sampleCredit += policy.getSampleRatio();
+            if (sampleCredit < 1) {
+                droppedBySample++;
+                return false;
+            }
+            sampleCredit -= 1;
+        }
+        byteAllowance -= length;
+        return true;
+    }
+
+    private long acquire(boolean headLines, long wanted) {
+        try {
+            return headLines ? budget.acquireHeadLines(wanted) : budget.acquireBytes(wanted);
+        } catch (RuntimeException e) {
+            // the channel to the controller is closed, nothing more is granted
+            LOG.log(Level.FINE, "failed to acquire console capture budget", e);
+            return 0;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized long acquireHeadLines(long lines) {
+        long granted = Math.max(0, Math.min(lines, headAllowance));
+        headAllowance -= granted;
+        return granted;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized long acquireBytes(long bytes) {
+        long granted = Math.max(0, Math.min(bytes, byteAllowance));
+        byteAllowance -= granted;
+        return granted;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void report(Report report) {
+        headAllowance += report.headAllowance;
+        byteAllowance += report.byteAllowance;
+        totalLines += report.totalLines;
+        sentLines += report.sentLines;
+        sentBytes += report.sentBytes;
+        droppedBytes += report.droppedBytes;
+        droppedByRate += report.droppedByRate;
+        droppedBySize += report.droppedBySize;
+        droppedBySample += report.droppedBySample;
+        if (policy.getTailLines() > 0) {
+            for (TailLine line : report.tail) {
+                tail.addLast(line.droppedText == null ? SENT_LINE : line);
+                if (tail.size() > policy.getTailLines()) {
+                    tail.removeFirst();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if dropped lines may be sent later as part of the tail window
+     */
+    public boolean isTailRetained() {
+        return policy.getTailLines() > 0;
+    }
+
+    /**
+     * @return the number of dropped lines
+     */
+    public synchronized long getDroppedLines() {
+        return droppedByRate + droppedBySize + droppedBySample;
+    }
+
+    /**
+     * Sends the dropped lines in the tail window and a summary event of what was dropped,
+     * or reports the counts to the budget of the build if this limiter does not own it.
+     * Only the first call of the owner takes effect
+     *
+     * @param source the console source
+     */
+    public void finish(String source) {
+        if (budget != null) {
+            Report report;
+            synchronized (this) {
+                // a step limiter may serve more than one stream, each reports what it counted since the last report
+                report = new Report(this);
+                headAllowance = 0;
+                byteAllowance = 0;
+                totalLines = sentLines = sentBytes = droppedBytes = 0;
+                droppedByRate = droppedBySize = droppedBySample = 0;
+                tail.clear();
+            }
+            try {
+                budget.report(report);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "failed to report console capture of " + source, e);
+            }
+            return;
+        }
+        StringBuilder tailText = new StringBuilder();
+        Map<String, Object> summary = new HashMap<>();
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long tailLines = 0;
+            long tailBytes = 0;
+            for (TailLine line : tail) {
+                if (line.droppedText != null) {
+                    tailText.append(line.droppedText);
+                    if (!line.droppedText.endsWith("\n")) {
+                        tailText.append('\n');
+                    }
+                    tailLines++;
+                    tailBytes += line.length;
+                }
+            }
+            tail.clear();
+            if (getDroppedLines() == 0) {
+                return;
+            }
+            summary.put(TAG, "console_capture");
+            summary.put("total_lines", totalLines);
+            summary.put("sent_lines", sentLines + tailLines);
+            summary.put("sent_bytes", sentBytes + tailBytes);
+            summary.put("dropped_lines", getDroppedLines() - tailLines);
+            summary.put("dropped_bytes", droppedBytes - tailBytes);
+            summary.put("dropped_by_rate", droppedByRate);
+            summary.put("dropped_by_size", droppedBySize);
+            summary.put("dropped_by_sample", droppedBySample);
+            summary.put("tail_retained", tailLines);
+            policy.describe(summary);
+        }
+        if (tailText.length() > 0) {
+            SplunkLogService.getInstance().send(tailText.toString(), CONSOLE_LOG, source);
+        }
+        SplunkLogService.getInstance().send(summary, BUILD_EVENT, source);
+    }
+
+    /**
+     * The counts, the unused allowances and the tail window of a step limiter
+     */
+    public static class Report implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final long headAllowance;
+        private final long byteAllowance;
+        private final long totalLines;
+        private final long sentLines;
+        private final long sentBytes;
+        private final long droppedBytes;
+        private final long droppedByRate;
+        private final long droppedBySize;
+        private final long droppedBySample;
+        private final ArrayList<TailLine> tail;
+
+        Report(ConsoleCaptureLimiter limiter) {
+            headAllowance = limiter.headAllowance;
+            byteAllowance = limiter.byteAllowance;
+            totalLines = limiter.totalLines;
+            sentLines = limiter.sentLines;
+            sentBytes = limiter.sentBytes;
+            droppedBytes = limiter.droppedBytes;
+            droppedByRate = limiter.droppedByRate;
+            droppedBySize = limiter.droppedBySize;
+            droppedBySample = limiter.droppedBySample;
+            tail = new ArrayList<>(limiter.tail);
+        }
+    }
+
+    private static class TailLine implements Serializable {
+        private static final long serialVersionUID = 1L;
+        // null if the line was sent
+        final String droppedText;
+        final long length;
+
+        TailLine(String droppedText, long length) {
+            this.droppedText = droppedText;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.splunk.splunkjenkins.utils;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Tracks the state hash of periodically reported entities such as agents and queue items, so only new and changed
+ * entities are sent. Fields which change on every report, such as durations, are excluded from the hash.
+ * Every fullSnapshotCycles updates, all entities are returned so the latest state can always be found in Splunk
+ * within a bounded time window.
+ */
+public class DeltaTracker {
+    private static final int FULL_SNAPSHOT_CYCLES = Integer.getInteger(DeltaTracker.class.getName() + ".fullSnapshotCycles", 10);
+    /**
+     * The field added into the returned entities, either full or delta
+     */
+    public static final String SNAPSHOT_FIELD = "snapshot";
+    private final Set<String> ignoredKeys;
+    private final int fullSnapshotCycles;
+    private Map<String, Long> hashes = new HashMap<>();
+    private Set<String> lastRemoved = new HashSet<>();
+    private int cycle = 0;
+
+    /**
+     * @param ignoredKeys the fields excluded from the state hash
+     */
+    public DeltaTracker(String... ignoredKeys) {
+        this(FULL_SNAPSHOT_CYCLES, ignoredKeys);
+    }
+
+    DeltaTracker(int fullSnapshotCycles, String... ignoredKeys) {
+        this.fullSnapshotCycles = fullSnapshotCycles;
+        this.ignoredKeys = ImmutableSet.copyOf(ignoredKeys);
+    }
+
+    /**
+     * @param entities the current entities keyed by id
+     * @return the new and changed entities, or all entities if it is a full snapshot cycle
+     */
+    public synchronized List<Map<String, Object>> update(Map<String, ? extends Map<String, Object>> entities) {
+        boolean full = fullSnapshotCycles <= 1 || cycle % fullSnapshotCycles == 0;
+        cycle++;
+        Map<String, Long> currentHashes = new HashMap<>(entities.size() * 2);
+        List<Map<String, Object>> changed = new ArrayList<>();
+        for (Map.Entry<String, ? extends Map<String, Object>> entry : entities.entrySet()) {
+            long hash = hash(entry.getValue());
+            currentHashes.put(entry.getKey(), hash);
+            Long previous = hashes.get(entry.getKey());
+            if (full || previous == null || previous != hash) {
+                Map<String, Object> entity = entry.getValue();
+                entity.put(SNAPSHOT_FIELD, full ? "full" : "delta");
+                changed.add(entity);
+            }
+        }
+        Set<String> removed = new HashSet<>(hashes.keySet());
+        removed.removeAll(currentHashes.keySet());
+        lastRemoved = removed;
+        hashes = currentHashes;
+        return changed;
+    }
+
+    /**
+     * @return the ids of the entities which were reported by the previous update but not the last one
+     */
+    public synchronized Set<String> getRemoved() {
+        return lastRemoved;
+    }
+
+    /**
+     * Maps a field value to the state compared between updates, such as a bucket of a measurement
+     *
+     * @param key   the field name
+     * @param value the field value
+     * @return the value as is by default
+     */
+    protected Object getState(String key, Object value) {
+        return value;
+    }
+
+    private long hash(Map<String, Object> entity) {
+        Map<String, Object> state = new TreeMap<>(entity);
+        state.keySet().removeAll(ignoredKeys);
+        state.remove(SNAPSHOT_FIELD);
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            entry.setValue(getState(entry.getKey(), entry.getValue()));
+        }
+        // values are strings, numbers and maps of them, so the text form is stable for the same state
+        return Hashing.murmur3_128().hashString(state.toString(), UTF_8).asLong();
+    }
+}
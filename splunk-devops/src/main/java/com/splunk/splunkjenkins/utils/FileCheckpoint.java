@@ -0,0 +1,353 @@
+package com.splunk.splunkjenkins.utils;
+
+import com.splunk.splunkjenkins.model.EventRecord;
+import hudson.util.AtomicFileWriter;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Upload checkpoint of one archived file, records the offset acknowledged by Splunk and the MD5
+ * digest of the content before the offset, so a retried upload can resume from the offset
+ * if the content was not changed, or skip the file if it was fully delivered.
+ * Checkpoints are kept in the build directory.
+ */
+public class FileCheckpoint implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = Logger.getLogger(FileCheckpoint.class.getName());
+    private static final String CHECKPOINT_FILE = "splunk-file-checkpoints.properties";
+    private final String source;
+    // acknowledged offset and the digest of content before it
+    private long offset;
+    private String digest;
+    // bytes to upload, it is less than file size if the file is truncated
+    private long size = -1;
+    private int eventCount;
+    // the file was not uploaded since it has the same digest as a previous upload
+    private boolean duplicate;
+    // a chunk was dropped without acknowledgement, the offset can not move over it any more
+    private boolean failed;
+    private transient ArrayDeque<Chunk> pendingChunks;
+    // chunks queued but not acknowledged yet
+    private transient int inFlightChunks;
+
+    /**
+     * @param source the source name of the file
+     */
+    public FileCheckpoint(String source) {
+        this.source = source;
+    }
+
+    private FileCheckpoint(String source, long offset, String digest, long size) {
+        this.source = source;
+        this.offset = offset;
+        this.digest = digest;
+        this.size = size;
+    }
+
+    /**
+     * @return a new MD5 digest
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param md the digest which is still updated later
+     * @return the hex digest of the content so far
+     */
+    public static String toHex(MessageDigest md) {
+        try {
+            return Hex.encodeHexString(((MessageDigest) md.clone()).digest());
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Starts a new upload from the acknowledged offset of this checkpoint
+     *
+     * @param source the source name of the file
+     * @param offset the offset to resume from
+     * @param digest the digest of content before the offset
+     * @param size   the bytes to upload
+     * @return the checkpoint of the new upload
+     */
+    static FileCheckpoint resume(String source, long offset, String digest, long size) {
+        return new FileCheckpoint(source, offset, digest, size);
+    }
+
+    /**
+     * Creates a complete checkpoint of a file which is skipped because the same content was uploaded before
+     *
+     * @param source the source name of the file
+     * @param digest the digest of the file
+     * @param size   the file size
+     * @return the checkpoint
+     */
+    static FileCheckpoint duplicate(String source, String digest, long size) {
+        FileCheckpoint checkpoint = new FileCheckpoint(source, size, digest, size);
+        checkpoint.duplicate = true;
+        return checkpoint;
+    }
+
+    /**
+     * Registers a chunk which is queued for sending
+     *
+     * @param endOffset  the offset after the chunk
+     * @param chunkDigest the digest of content before endOffset
+     * @return the callback to run once the chunk is acknowledged
+     */
+    synchronized Runnable addChunk(long endOffset, String chunkDigest) {
+        if (pendingChunks == null) {
+            pendingChunks = new ArrayDeque<>();
+        }
+        final Chunk chunk = new Chunk(endOffset, chunkDigest);
+        pendingChunks.addLast(chunk);
+        inFlightChunks++;
+        eventCount++;
+        return new Runnable() {
+            @Override
+            public void run() {
+                acknowledge(chunk);
+            }
+        };
+    }
+
+    /**
+     * Registers the chunk carried by the record, the checkpoint fails if the record is released
+     * without being acknowledged
+     *
+     * @param record      the record which carries the chunk
+     * @param endOffset   the offset after the chunk
+     * @param chunkDigest the digest of content before endOffset
+     */
+    void addChunk(EventRecord record, long endOffset, String chunkDigest) {
+        record.setAckCallback(addChunk(endOffset, chunkDigest));
+        record.setFailCallback(new Runnable() {
+            @Override
+            public void run() {
+                fail();
+            }
+        });
+    }
+
+    /**
+     * Marks the upload failed, a chunk will never be acknowledged
+     */
+    synchronized void fail() {
+        failed = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until all queued chunks are acknowledged or a chunk failed
+     *
+     * @param timeoutMillis max milliseconds to wait
+     * @return true if all queued chunks were acknowledged
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized boolean awaitAcknowledged(long timeoutMillis) throws InterruptedException {
+        long expireTime = System.currentTimeMillis() + timeoutMillis;
+        while (!isAcknowledged() && !failed) {
+            long remaining = expireTime - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+        }
+        return isAcknowledged();
+    }
+
+    /**
+     * Waits until fewer than maxChunks chunks of this upload are in flight or a chunk failed
+     *
+     * @param maxChunks     max chunks queued but not acknowledged
+     * @param timeoutMillis max milliseconds to wait
+     * @return true if a chunk can be queued
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized boolean awaitInFlight(int maxChunks, long timeoutMillis) throws InterruptedException {
+        long expireTime = System.currentTimeMillis() + timeoutMillis;
+        while (inFlightChunks >= maxChunks && !failed) {
+            long remaining = expireTime - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return !failed;
+    }
+
+    private synchronized void acknowledge(Chunk chunk) {
+        chunk.acked = true;
+        inFlightChunks--;
+        // chunks may be sent out of order by several workers, only move over the acknowledged prefix
+        while (!pendingChunks.isEmpty() && pendingChunks.peekFirst().acked) {
+            Chunk head = pendingChunks.removeFirst();
+            offset = head.endOffset;
+            digest = head.digest;
+        }
+        // wakes both awaitAcknowledged and awaitInFlight
+        notifyAll();
+    }
+
+    synchronized void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * @return the source name of the file
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the acknowledged offset
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the MD5 digest of the content before the offset
+     */
+    public synchronized String getDigest() {
+        return digest;
+    }
+
+    /**
+     * @return the number of events sent in this upload
+     */
+    public synchronized int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return true if all bytes were acknowledged
+     */
+    public synchronized boolean isComplete() {
+        return size >= 0 && offset >= size;
+    }
+
+    /**
+     * @return true if the file was skipped because the same content was uploaded before
+     */
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
+    /**
+     * @return true if a chunk was dropped without acknowledgement
+     */
+    public synchronized boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return true if all queued chunks were acknowledged
+     */
+    public synchronized boolean isAcknowledged() {
+        return pendingChunks == null || pendingChunks.isEmpty();
+    }
+
+    /**
+     * Loads the checkpoints saved in the build directory
+     *
+     * @param buildDir the build directory
+     * @return the checkpoints keyed by source name
+     */
+    public static Map<String, FileCheckpoint> load(File buildDir) {
+        Map<String, FileCheckpoint> checkpoints = new HashMap<>();
+        File file = new File(buildDir, CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return checkpoints;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "failed to load file checkpoints " + file, e);
+            return checkpoints;
+        }
+        for (String source : properties.stringPropertyNames()) {
+            // offset,size,digest
+            String[] values = properties.getProperty(source).split(",", 3);
+            if (values.length != 3) {
+                continue;
+            }
+            try {
+                checkpoints.put(source, new FileCheckpoint(source, Long.parseLong(values[0]), values[2], Long.parseLong(values[1])));
+            } catch (NumberFormatException e) {
+                LOG.log(Level.FINE, "ignored invalid checkpoint of " + source);
+            }
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Saves the checkpoints into the build directory, merged with the existing ones
+     *
+     * @param buildDir    the build directory
+     * @param checkpoints the checkpoints of this upload
+     */
+    public static synchronized void save(File buildDir, Collection<FileCheckpoint> checkpoints) {
+        if (checkpoints.isEmpty()) {
+            return;
+        }
+        Map<String, FileCheckpoint> merged = load(buildDir);
+        for (FileCheckpoint checkpoint : checkpoints) {
+            if (checkpoint.getDigest() != null) {
+                merged.put(checkpoint.getSource(), checkpoint);
+            }
+        }
+        Properties properties = new Properties();
+        for (FileCheckpoint checkpoint : merged.values()) {
+            synchronized (checkpoint) {
+                properties.setProperty(checkpoint.source, checkpoint.offset + "," + checkpoint.size + "," + checkpoint.digest);
+            }
+        }
+        try {
+            AtomicFileWriter writer = new AtomicFileWriter(new File(buildDir, CHECKPOINT_FILE).toPath(), UTF_8);
+            try {
+                properties.store(writer, "splunk file upload checkpoints, offset,size,md5");
+                writer.commit();
+            } finally {
+                writer.abort();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "failed to save file checkpoints in " + buildDir, e);
+        }
+    }
+
+    private static class Chunk {
+        final long endOffset;
+        final String digest;
+        boolean acked;
+
+        Chunk(long endOffset, String digest) {
+            this.endOffset = endOffset;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.splunk.splunkjenkins.utils;
+
+import hudson.model.Run;
+import hudson.util.AtomicFileWriter;
+import jenkins.model.Jenkins;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.splunk.splunkjenkins.Constants.TAG;
+import static com.splunk.splunkjenkins.model.EventType.BUILD_EVENT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Index of archived files keyed by job and path, kept on controller in JENKINS_HOME.
+ * The digests known for a job are passed to {@link LogFileCallable}, which computes the digest of a file
+ * on the node and skips the upload if the file was not changed, a reference event to the first upload
+ * of the same MD5 digest is sent instead.
+ * The index holds at most maxEntries files, the least recently used ones are evicted.
+ */
+public class FileDedupIndex {
+    private static final Logger LOG = Logger.getLogger(FileDedupIndex.class.getName());
+    private static final boolean ENABLED = Boolean.getBoolean(FileDedupIndex.class.getName() + ".enabled");
+    private static final int MAX_ENTRIES = Integer.getInteger(FileDedupIndex.class.getName() + ".maxEntries", 10000);
+    private static final long MIN_FILE_SIZE = Long.getLong(FileDedupIndex.class.getName() + ".minFileSize", 64 * 1024);
+    private static final String INDEX_FILE = "splunk-file-dedup.index";
+    private static FileDedupIndex instance;
+    private final File indexFile;
+    // keyed by job url and path
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                release(eldest.getValue().digest);
+                return true;
+            }
+            return false;
+        }
+    };
+    // the first upload of a digest, kept while an entry has the digest
+    private final Map<String, Upload> uploads = new HashMap<>();
+
+    FileDedupIndex(File indexFile) {
+        this.indexFile = indexFile;
+        load();
+    }
+
+    /**
+     * @return true if archived files are deduplicated
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @return the index saved in JENKINS_HOME
+     */
+    public static synchronized FileDedupIndex get() {
+        if (instance == null) {
+            instance = new FileDedupIndex(new File(Jenkins.get().getRootDir(), INDEX_FILE));
+        }
+        return instance;
+    }
+
+    /**
+     * @param jobUrl the job url
+     * @return the digests of the files uploaded by the job, keyed by path relative to the workspace
+     */
+    public synchronized Map<String, String> getDigests(String jobUrl) {
+        Map<String, String> digests = new HashMap<>();
+        for (Entry entry : entries.values()) {
+            if (entry.jobUrl.equals(jobUrl)) {
+                digests.put(entry.path, entry.digest);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Sends reference events for the skipped files, and adds the uploaded files into the index
+     *
+     * @param build       the build which archived the files
+     * @param checkpoints the checkpoints of the upload
+     */
+    public void update(Run build, Collection<FileCheckpoint> checkpoints) {
+        String buildUrl = build.getUrl();
+        String jobUrl = build.getParent().getUrl();
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+        for (FileCheckpoint checkpoint : checkpoints) {
+            if (checkpoint.getDigest() == null || !checkpoint.getSource().startsWith(buildUrl)) {
+                continue;
+            }
+            String path = checkpoint.getSource().substring(buildUrl.length());
+            if (checkpoint.isDuplicate()) {
+                Entry entry;
+                Upload upload;
+                synchronized (this) {
+                    // refreshes the access order
+                    entry = entries.get(getKey(jobUrl, path));
+                    upload = uploads.get(checkpoint.getDigest());
+                }
+                Map<String, Object> reference = new HashMap<>();
+                reference.put(TAG, "file_reference");
+                reference.put("md5", checkpoint.getDigest());
+                reference.put("size", checkpoint.getOffset());
+                if (upload != null) {
+                    reference.put("reference_source", upload.source);
+                    reference.put("reference_time", upload.time);
+                }
+                SplunkLogService.getInstance().send(reference, BUILD_EVENT, checkpoint.getSource());
+                changed |= entry != null;
+            } else if (checkpoint.isComplete() && checkpoint.getOffset() >= MIN_FILE_SIZE) {
+                synchronized (this) {
+                    // the same content uploaded under another path keeps the first upload as reference
+                    changed |= put(checkpoint.getDigest(), jobUrl, path, checkpoint.getSource(), now);
+                }
+            }
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    private static String getKey(String jobUrl, String path) {
+        return jobUrl + "\t" + path;
+    }
+
+    /**
+     * @return false if the path of the job already has the digest
+     */
+    private boolean put(String digest, String jobUrl, String path, String source, long time) {
+        String key = getKey(jobUrl, path);
+        Entry previous = entries.get(key);
+        if (previous != null && previous.digest.equals(digest)) {
+            return false;
+        }
+        Upload upload = uploads.get(digest);
+        if (upload == null) {
+            upload = new Upload(source, time);
+            uploads.put(digest, upload);
+        }
+        upload.references++;
+        entries.put(key, new Entry(digest, jobUrl, path));
+        if (previous != null) {
+            release(previous.digest);
+        }
+        return true;
+    }
+
+    private void release(String digest) {
+        Upload upload = uploads.get(digest);
+        if (upload != null && --upload.references <= 0) {
+            uploads.remove(digest);
+        }
+    }
+
+    private synchronized void load() {
+        if (!indexFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // digest time jobUrl path source, separated by tab, time and source are of the first upload of the digest
+                String[] values = line.split("\t", 5);
+                if (values.length != 5) {
+                    continue;
+                }
+                try {
+                    put(values[0], values[2], values[3], values[4], Long.parseLong(values[1]));
+                } catch (NumberFormatException e) {
+                    LOG.log(Level.FINE, "ignored invalid dedup entry " + line);
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "failed to load file dedup index " + indexFile, e);
+        }
+    }
+
+    private synchronized void save() {
+        try {
+            AtomicFileWriter writer = new AtomicFileWriter(indexFile.toPath(), UTF_8);
+            try {
+                for (Entry entry : entries.values()) {
+                    Upload upload = uploads.get(entry.digest);
+                    writer.write(entry.digest + "\t" + upload.time + "\t" + entry.jobUrl + "\t" + entry.path + "\t" + upload.source + "\n");
+                }
+                writer.commit();
+            } finally {
+                writer.abort();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "failed to save file dedup index " + indexFile, e);
+        }
+    }
+
+    private static class Entry {
+        final String digest;
+        final String jobUrl;
+        final String path;
+
+        Entry(String digest, String jobUrl, String path) {
+            this.digest = digest;
+            this.jobUrl = jobUrl;
+            this.path = path;
+        }
+    }
+
+    private static class Upload {
+        final String source;
+        final long time;
+        // number of entries with the digest
+        int references;
+
+        Upload(String source, long time) {
+            this.source = source;
+            this.time = time;
+        }
+    }
+}
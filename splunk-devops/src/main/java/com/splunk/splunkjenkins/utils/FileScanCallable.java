@@ -0,0 +1,153 @@
+package com.splunk.splunkjenkins.utils;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lists the workspace files to archive on the node which owns the workspace, in one remoting call.
+ * Directories, files modified before a given time and optionally files larger than the size limit are filtered out,
+ * the rest is ordered by modification time so older logs are sent first.
+ */
+public class FileScanCallable implements FilePath.FileCallable<FileScanCallable.Result> {
+    private static final long serialVersionUID = 1L;
+    private final String includes;
+    private final String excludes;
+    private final long maxFileSize;
+    private final boolean rejectOversize;
+    private final long modifiedSince;
+
+    /**
+     * @param includes       the ant style pattern of files to include
+     * @param excludes       the ant style pattern of files to exclude, can be null
+     * @param maxFileSize    the file size limit, 0 means no limit
+     * @param rejectOversize whether files larger than maxFileSize are skipped, otherwise they are truncated when sent
+     * @param modifiedSince  files modified before this time in milliseconds are skipped, 0 means no filter
+     */
+    public FileScanCallable(String includes, String excludes, long maxFileSize, boolean rejectOversize, long modifiedSince) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.maxFileSize = maxFileSize;
+        this.rejectOversize = rejectOversize;
+        this.modifiedSince = modifiedSince;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Result invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        if (!workspace.isDirectory()) {
+            return null;
+        }
+        String basePath = workspace.getAbsolutePath();
+        List<ScannedFile> files = new ArrayList<>();
+        List<ScannedFile> rejected = new ArrayList<>();
+        for (FilePath path : new FilePath(workspace).list(includes, excludes)) {
+            File file = new File(path.getRemote());
+            if (!file.isFile()) {
+                continue;
+            }
+            long lastModified = file.lastModified();
+            if (lastModified < modifiedSince) {
+                continue;
+            }
+            ScannedFile scanned = new ScannedFile(file.getAbsolutePath().substring(basePath.length() + 1), file.length(), lastModified);
+            if (rejectOversize && maxFileSize > 0 && scanned.getSize() > maxFileSize) {
+                rejected.add(scanned);
+            } else {
+                files.add(scanned);
+            }
+        }
+        Collections.sort(files, new Comparator<ScannedFile>() {
+            @Override
+            public int compare(ScannedFile o1, ScannedFile o2) {
+                int result = Long.compare(o1.getLastModified(), o2.getLastModified());
+                return result != 0 ? result : o1.getPath().compareTo(o2.getPath());
+            }
+        });
+        return new Result(files, rejected);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+
+    }
+
+    /**
+     * A file found in the workspace
+     */
+    public static class ScannedFile implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String path;
+        private final long size;
+        private final long lastModified;
+
+        ScannedFile(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return the path relative to the workspace, with the separator of the node
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the file size
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the modification time in milliseconds
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    /**
+     * Files to archive and files skipped because of the size limit
+     */
+    public static class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final List<ScannedFile> files;
+        private final List<ScannedFile> rejected;
+
+        Result(List<ScannedFile> files, List<ScannedFile> rejected) {
+            this.files = files;
+            this.rejected = rejected;
+        }
+
+        /**
+         * @return the files to archive, ordered by modification time
+         */
+        public List<ScannedFile> getFiles() {
+            return files;
+        }
+
+        /**
+         * @return the files larger than the size limit
+         */
+        public List<ScannedFile> getRejected() {
+            return rejected;
+        }
+    }
+}
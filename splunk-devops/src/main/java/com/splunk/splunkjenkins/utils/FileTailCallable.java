@@ -0,0 +1,245 @@
+package com.splunk.splunkjenkins.utils;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the bytes appended to workspace files since the last call, runs on the node which owns the workspace.
+ * A file is read from the start again if it was rotated (a different file key) or truncated (smaller than the offset).
+ * Only complete lines are returned unless it is the final read.
+ * The byte budget of a call is shared by the files, each file may read an equal share of what is left,
+ * so a fast growing file can not starve the files after it.
+ */
+public class FileTailCallable implements FilePath.FileCallable<FileTailCallable.Result> {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = Logger.getLogger(FileTailCallable.class.getName());
+    private final String includes;
+    private final String excludes;
+    private final Map<String, TailOffset> offsets;
+    private final long maxBytes;
+    private final boolean finalRead;
+
+    /**
+     * @param includes  the ant style pattern of files to tail
+     * @param excludes  the ant style pattern of files to skip, can be null
+     * @param offsets   the offsets returned by the last call, keyed by path relative to the workspace
+     * @param maxBytes  max bytes to read in one call
+     * @param finalRead whether to read incomplete lines too
+     */
+    public FileTailCallable(String includes, String excludes, Map<String, TailOffset> offsets, long maxBytes, boolean finalRead) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.offsets = new HashMap<>(offsets);
+        this.maxBytes = maxBytes;
+        this.finalRead = finalRead;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Result invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        FilePath[] paths = new FilePath(workspace).list(includes, excludes);
+        Arrays.sort(paths, new Comparator<FilePath>() {
+            @Override
+            public int compare(FilePath o1, FilePath o2) {
+                return o1.getRemote().compareTo(o2.getRemote());
+            }
+        });
+        String basePath = workspace.getAbsolutePath();
+        List<Chunk> chunks = new ArrayList<>();
+        long budget = maxBytes;
+        boolean more = false;
+        for (int i = 0; i < paths.length; i++) {
+            if (budget <= 0) {
+                more = true;
+                break;
+            }
+            // the budget left unused by smaller files is shared by the files after them
+            long share = Math.max(1, budget / (paths.length - i));
+            File file = new File(paths[i].getRemote());
+            String relativePath = file.getAbsolutePath().substring(basePath.length() + 1).replace("\\", "/");
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            } catch (IOException e) {
+                // removed after listing
+                continue;
+            }
+            String fileKey = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+            long size = attributes.size();
+            TailOffset previous = offsets.get(relativePath);
+            long offset = 0;
+            if (previous != null) {
+                if (previous.isSameFile(fileKey) && size >= previous.getOffset()) {
+                    offset = previous.getOffset();
+                } else {
+                    LOG.log(Level.FINE, "{0} was rotated or truncated, read from start", relativePath);
+                }
+            }
+            if (size > offset) {
+                long length = Math.min(size - offset, share);
+                more |= length < size - offset;
+                byte[] content = read(file, offset, length);
+                if (!finalRead) {
+                    int end = lastLineEnd(content);
+                    // a line longer than the share is sent as is, otherwise keep the incomplete line for next call
+                    if (end < content.length && (end > 0 || length < share)) {
+                        content = Arrays.copyOf(content, end);
+                    }
+                }
+                if (content.length > 0) {
+                    chunks.add(new Chunk(relativePath, content));
+                    offset += content.length;
+                    budget -= content.length;
+                }
+            }
+            offsets.put(relativePath, new TailOffset(offset, fileKey));
+        }
+        return new Result(offsets, chunks, more);
+    }
+
+    private static byte[] read(File file, long offset, long length) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            input.seek(offset);
+            byte[] content = new byte[(int) length];
+            int n = 0;
+            while (n < content.length) {
+                int count = input.read(content, n, content.length - n);
+                if (count < 0) {
+                    break;
+                }
+                n += count;
+            }
+            return n == content.length ? content : Arrays.copyOf(content, n);
+        }
+    }
+
+    private static int lastLineEnd(byte[] content) {
+        for (int i = content.length - 1; i >= 0; i--) {
+            if (content[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+
+    }
+
+    /**
+     * Read position of a tailed file
+     */
+    public static class TailOffset implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final long offset;
+        private final String fileKey;
+
+        /**
+         * @param offset  the offset of next read
+         * @param fileKey the file key of the file, null if the file system does not support it
+         */
+        public TailOffset(long offset, String fileKey) {
+            this.offset = offset;
+            this.fileKey = fileKey;
+        }
+
+        /**
+         * @return the offset of next read
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @param otherKey the file key of current file
+         * @return false if the file was replaced by a rotation
+         */
+        boolean isSameFile(String otherKey) {
+            return fileKey == null ? otherKey == null : fileKey.equals(otherKey);
+        }
+    }
+
+    /**
+     * Content appended to one file
+     */
+    public static class Chunk implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String path;
+        private final byte[] content;
+
+        Chunk(String path, byte[] content) {
+            this.path = path;
+            this.content = content;
+        }
+
+        /**
+         * @return the file path relative to the workspace
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the appended bytes
+         */
+        public byte[] getContent() {
+            return content;
+        }
+    }
+
+    /**
+     * Result of one read
+     */
+    public static class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Map<String, TailOffset> offsets;
+        private final List<Chunk> chunks;
+        private final boolean more;
+
+        Result(Map<String, TailOffset> offsets, List<Chunk> chunks, boolean more) {
+            this.offsets = offsets;
+            this.chunks = chunks;
+            this.more = more;
+        }
+
+        /**
+         * @return the offsets to pass to the next call
+         */
+        public Map<String, TailOffset> getOffsets() {
+            return Collections.unmodifiableMap(offsets);
+        }
+
+        /**
+         * @return the appended content, ordered by file path
+         */
+        public List<Chunk> getChunks() {
+            return chunks;
+        }
+
+        /**
+         * @return true if some content was left because of the byte limit
+         */
+        public boolean hasMore() {
+            return more;
+        }
+    }
+}
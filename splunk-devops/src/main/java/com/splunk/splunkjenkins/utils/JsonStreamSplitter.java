@@ -0,0 +1,72 @@
+package com.splunk.splunkjenkins.utils;
+
+import shaded.splk.com.google.gson.Gson;
+import shaded.splk.com.google.gson.JsonElement;
+import shaded.splk.com.google.gson.TypeAdapter;
+import shaded.splk.com.google.gson.stream.JsonReader;
+import shaded.splk.com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads json values one by one from a stream, only the current value is kept in memory.
+ * Top level values separated by whitespace (newline delimited json) are returned one by one,
+ * a top level array is unwrapped and its elements are returned one by one.
+ */
+class JsonStreamSplitter implements Closeable {
+    private static final TypeAdapter<JsonElement> ELEMENT_ADAPTER = new Gson().getAdapter(JsonElement.class);
+    private final JsonReader reader;
+    private boolean inArray;
+
+    /**
+     * @param in the json content
+     */
+    JsonStreamSplitter(Reader in) {
+        this.reader = new JsonReader(in);
+        // accept multiple top level values
+        this.reader.setLenient(true);
+    }
+
+    /**
+     * @return the next value, or null if the end is reached
+     * @throws IOException if the content is not valid json
+     */
+    JsonElement next() throws IOException {
+        while (true) {
+            JsonToken token;
+            try {
+                token = reader.peek();
+            } catch (EOFException e) {
+                if (inArray) {
+                    throw e;
+                }
+                // an empty document
+                return null;
+            }
+            if (inArray) {
+                if (token == JsonToken.END_ARRAY) {
+                    reader.endArray();
+                    inArray = false;
+                    continue;
+                }
+                return ELEMENT_ADAPTER.read(reader);
+            }
+            if (token == JsonToken.END_DOCUMENT) {
+                return null;
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                inArray = true;
+                continue;
+            }
+            return ELEMENT_ADAPTER.read(reader);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
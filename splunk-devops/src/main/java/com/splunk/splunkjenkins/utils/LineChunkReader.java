@@ -0,0 +1,166 @@
+package com.splunk.splunkjenkins.utils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Splits a file into chunks which end at a line boundary, the file is read through a reused
+ * window buffer with {@link FileChannel#read(ByteBuffer, long)} and each chunk is copied out of it in bulk.
+ * Nothing is memory mapped, so the file can be deleted as soon as the reader is closed, e.g. by workspace cleanup on Windows.
+ * A chunk ends at the first line break after chunkSize bytes, the same rule as
+ * the stream based reader, unless a single line is longer than the window.
+ */
+public class LineChunkReader implements Closeable {
+    private static final long MIN_WINDOW_SIZE = Long.getLong(LineChunkReader.class.getName() + ".windowSize", 4L << 20);
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long chunkSize;
+    private final long maxSize;
+    private final long limit;
+    private final long windowSize;
+    // holds the file content from windowStart, allocated on first read
+    private ByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    /**
+     * @param file      the file to read
+     * @param chunkSize the min size of a chunk
+     * @param maxSize   max bytes to read, 0 means the whole file
+     * @throws IOException if the file can not be opened
+     */
+    public LineChunkReader(File file, long chunkSize, long maxSize) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        long size = channel.size();
+        this.maxSize = maxSize;
+        this.limit = maxSize > 0 ? Math.min(size, maxSize) : size;
+        this.chunkSize = Math.max(0, chunkSize);
+        // the window must fit into an int indexed buffer
+        this.windowSize = Math.min(Integer.MAX_VALUE, MIN_WINDOW_SIZE + 2 * this.chunkSize);
+    }
+
+    /**
+     * @return true if the file is larger than max size, a file growing while it is read is not truncated
+     * @throws IOException if the file size can not be read
+     */
+    public boolean isTruncated() throws IOException {
+        return maxSize > 0 && channel.size() > limit;
+    }
+
+    /**
+     * @return the number of bytes to read
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Moves to the offset, which must be a chunk boundary of a previous read
+     *
+     * @param offset the offset of the next chunk
+     */
+    public void seek(long offset) {
+        position = Math.min(offset, limit);
+        if (window != null) {
+            window.limit(0);
+        }
+    }
+
+    /**
+     * Updates the digest with the file content before length, the position is not changed
+     *
+     * @param length the number of bytes from the file start
+     * @param md     the digest to update
+     * @throws IOException if the file can not be read
+     */
+    public void digest(long length, MessageDigest md) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long offset = 0;
+        while (offset < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - offset));
+            int n = channel.read(buffer, offset);
+            if (n < 0) {
+                throw new EOFException("unexpected end of file at " + offset);
+            }
+            md.update(buffer.array(), 0, n);
+            offset += n;
+        }
+    }
+
+    /**
+     * @return the offset of the next chunk
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the next chunk, or null if the end is reached
+     * @throws IOException if the file can not be read
+     */
+    public byte[] next() throws IOException {
+        if (position >= limit) {
+            return null;
+        }
+        if (window == null) {
+            window = ByteBuffer.allocate((int) Math.min(windowSize, limit));
+            window.limit(0);
+        }
+        long windowEnd = windowStart + window.limit();
+        // refill once less than half of the window is left, so the line break after chunkSize is mostly inside
+        if (position < windowStart || position >= windowEnd
+                || windowEnd < limit && windowEnd - position < window.capacity() / 2) {
+            fill();
+        }
+        byte[] data = window.array();
+        int start = (int) (position - windowStart);
+        int end = window.limit();
+        for (int i = (int) Math.min(start + chunkSize, end); i < window.limit(); i++) {
+            if (data[i] == '\n') {
+                end = i + 1;
+                break;
+            }
+        }
+        byte[] chunk = Arrays.copyOfRange(data, start, end);
+        position = windowStart + end;
+        return chunk;
+    }
+
+    /**
+     * Reads the window from the current position, the bytes already read after it are kept
+     */
+    private void fill() throws IOException {
+        long windowEnd = windowStart + window.limit();
+        if (position >= windowStart && position < windowEnd) {
+            window.position((int) (position - windowStart));
+            window.compact();
+        } else {
+            window.clear();
+        }
+        windowStart = position;
+        long readEnd = Math.min(limit, windowStart + window.capacity());
+        window.limit((int) (readEnd - windowStart));
+        while (window.hasRemaining()) {
+            int n = channel.read(window, windowStart + window.position());
+            if (n < 0) {
+                throw new EOFException("unexpected end of file at " + (windowStart + window.position()));
+            }
+        }
+        window.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+}
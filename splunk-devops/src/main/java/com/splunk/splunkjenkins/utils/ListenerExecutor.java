@@ -0,0 +1,113 @@
+package com.splunk.splunkjenkins.utils;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the event building of Jenkins listeners off the queue and executor threads.
+ * The listener captures the state which may change after the callback, the rest such as
+ * build variables, test summary and stage graph is extracted on a small pool of lanes.
+ * Tasks with the same key run on the same lane in submission order, so the completed event of a build
+ * never overtakes its started event. A lane is a single thread with a bounded queue,
+ * once the lane is full the caller waits a short while for room and the task is dropped if there is still none,
+ * the task never runs on the caller thread which may hold the queue lock.
+ */
+public class ListenerExecutor {
+    private static final Logger LOG = Logger.getLogger(ListenerExecutor.class.getName());
+    private static final boolean DISABLED = Boolean.getBoolean(ListenerExecutor.class.getName() + ".disabled");
+    private static final int LANE_COUNT = Math.max(1, Integer.getInteger(ListenerExecutor.class.getName() + ".lanes", 2));
+    private static final int QUEUE_SIZE = Math.max(1, Integer.getInteger(ListenerExecutor.class.getName() + ".queueSize", 1024));
+    private static final long OFFER_TIMEOUT = Long.getLong(ListenerExecutor.class.getName() + ".offerTimeout", 100);
+    private static final ThreadPoolExecutor[] lanes = new ThreadPoolExecutor[LANE_COUNT];
+    private static final AtomicLong droppedCount = new AtomicLong();
+    private static final RejectedExecutionHandler WAIT_OR_DROP = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            try {
+                // the lane thread is already started since its queue is full, so the queued task will run
+                if (!executor.isShutdown() && executor.getQueue().offer(task, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (droppedCount.incrementAndGet() == 1) {
+                LOG.log(Level.WARNING, "listener event queue is full or shut down, events are dropped");
+            }
+        }
+    };
+
+    static {
+        for (int i = 0; i < LANE_COUNT; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "splunkins-listener-" + i),
+                    WAIT_OR_DROP);
+        }
+    }
+
+    private ListenerExecutor() {
+    }
+
+    /**
+     * Runs the task asynchronously
+     *
+     * @param key  the ordering key, such as build url or node name
+     * @param task the task
+     */
+    public static void execute(String key, final Runnable task) {
+        Runnable guarded = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    LOG.log(Level.SEVERE, "failed to send listener event", e);
+                }
+            }
+        };
+        if (DISABLED) {
+            guarded.run();
+            return;
+        }
+        int hash = key == null ? 0 : key.hashCode();
+        lanes[(hash & Integer.MAX_VALUE) % LANE_COUNT].execute(guarded);
+    }
+
+    /**
+     * @return the number of listener events dropped since Jenkins started
+     */
+    public static long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Stops accepting tasks and waits for the submitted ones, later tasks are dropped
+     *
+     * @param timeoutMillis max milliseconds to wait
+     * @return true if all submitted tasks were completed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static boolean shutdown(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || !lane.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+                LOG.log(Level.WARNING, "listener events were not sent in {0} ms", timeoutMillis);
+                return false;
+            }
+        }
+        return true;
+    }
+}
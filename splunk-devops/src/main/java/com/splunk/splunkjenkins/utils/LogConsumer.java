@@ -34,7 +34,7 @@ public class LogConsumer extends Thread {
     private boolean acceptingTask = true;
     private AtomicLong outgoingCounter;
     private long errorCount;
-    private boolean sending = false;
+    private volatile boolean sending = false;
     private final int RETRY_SLEEP_THRESHOLD = 1 << 10;
     private List<Class<? extends IOException>> giveUpExceptions = Arrays.asList(
             UnknownHostException.class,
@@ -101,11 +101,14 @@ public class LogConsumer extends Thread {
         while (acceptingTask) {
             try {
                 EventRecord record = queue.take();
+                SplunkLogService.getInstance().dequeued(record);
                 HttpPost post = null;
+                boolean requeued = false;
                 try {
                     sending = true;
                     post = buildPost(record, SplunkJenkinsInstallation.get());
                     client.execute(post, responseHandler);
+                    record.acknowledge();
                 } catch (IOException ex) {
                     boolean isDiscarded = false;
                     for (Class<? extends IOException> giveUpException : giveUpExceptions) {
@@ -116,7 +119,7 @@ public class LogConsumer extends Thread {
                         }
                     }
                     if (!isDiscarded) {
-                        handleRetry(ex, record);
+                        requeued = handleRetry(ex, record);
                     }
                 } catch (Exception e) {
                     LOG.log(Level.SEVERE, "failed construct post message" + record.getShortDescription(), e);
@@ -125,6 +128,11 @@ public class LogConsumer extends Thread {
                     if (post != null) {
                         post.releaseConnection();
                     }
+                    if (!requeued) {
+                        // a failed retry enqueue already released it, release is idempotent
+                        record.release();
+                    }
+                    SplunkLogService.getInstance().finished(record);
                 }
             } catch (InterruptedException e) {
                 errorCount++;
@@ -136,22 +144,31 @@ public class LogConsumer extends Thread {
         }
     }
 
-    private void handleRetry(IOException ex, EventRecord record) throws InterruptedException {
+    private boolean handleRetry(IOException ex, EventRecord record) throws InterruptedException {
         if (ex instanceof SplunkServiceError) {
             int sleepTime = 2 * retryInterval;
             LOG.log(Level.WARNING, "{0}, will wait {1} seconds and retry", new Object[]{ex.getMessage(), sleepTime});
-            retry(record, sleepTime);
+            return retry(record, sleepTime);
         } else if (ex instanceof ConnectException) {
             // splunk is restarting or network broke
             LOG.log(Level.WARNING, "{0} connect error, will wait {1} seconds and retry", new Object[]{this.getName(), retryInterval});
-            retry(record, retryInterval);
+            return retry(record, retryInterval);
         } else {
             //other errors
             LOG.log(Level.WARNING, "will resend the message:{0}", record.getShortDescription());
-            retry(record, 1);
+            return retry(record, 1);
         }
     }
 
+    /**
+     * Checks whether the worker is posting a record to Splunk
+     *
+     * @return true if a request is in flight
+     */
+    public boolean isSending() {
+        return sending;
+    }
+
     /**
      * Stops the LogConsumer worker thread gracefully
      */
@@ -177,22 +194,24 @@ public class LogConsumer extends Thread {
      *
      * @param record the event record to retry
      * @param sleepIntervalInSeconds the sleep interval in seconds before retrying
+     * @return true if the record was queued again
      * @throws InterruptedException if the thread is interrupted
      */
-    private void retry(EventRecord record, int sleepIntervalInSeconds) throws InterruptedException {
+    private boolean retry(EventRecord record, int sleepIntervalInSeconds) throws InterruptedException {
         //try bump error count
         record.increase();
         if (record.isDiscarded()) {
             LOG.log(Level.SEVERE, "discarded " + record.getShortDescription());
-            return;
+            return false;
         }
         if (acceptingTask) {
             if (queue.size() < RETRY_SLEEP_THRESHOLD) {
                 //We don't have much data in queue so wait a while for the service to recovery(hopefully)
                 Thread.sleep(sleepIntervalInSeconds * 1000);
             }
-            SplunkLogService.getInstance().enqueue(record);
+            return SplunkLogService.getInstance().enqueue(record);
         }
+        return false;
     }
 
     /**
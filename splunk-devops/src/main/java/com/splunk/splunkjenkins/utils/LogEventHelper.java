@@ -15,6 +15,7 @@ import shaded.splk.com.google.gson.FieldNamingStrategy;
 import shaded.splk.com.google.gson.Gson;
 import shaded.splk.com.google.gson.GsonBuilder;
 import com.splunk.splunkjenkins.Constants;
+import com.splunk.splunkjenkins.MasterStatsSampler;
 import com.splunk.splunkjenkins.SplunkJenkinsInstallation;
 import com.splunk.splunkjenkins.model.EventRecord;
 import com.splunk.splunkjenkins.model.EventType;
@@ -38,15 +39,14 @@ import shaded.splk.org.apache.http.client.HttpClient;
 import shaded.splk.org.apache.http.client.entity.GzipCompressingEntity;
 import shaded.splk.org.apache.http.client.methods.HttpPost;
 import shaded.splk.org.apache.http.client.utils.URIBuilder;
+import shaded.splk.org.apache.http.entity.AbstractHttpEntity;
+import shaded.splk.org.apache.http.entity.ByteArrayEntity;
+import shaded.splk.org.apache.http.entity.ContentType;
 import shaded.splk.org.apache.http.entity.StringEntity;
 import shaded.splk.org.apache.http.util.EntityUtils;
 
 import java.io.*;
-import java.lang.management.ManagementFactory;
-import java.lang.management.MemoryUsage;
-import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.Instant;
@@ -59,11 +59,10 @@ import static com.google.common.base.Strings.emptyToNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.splunk.splunkjenkins.Constants.*;
 import static com.splunk.splunkjenkins.model.EventType.BATCH_JSON;
+import static com.splunk.splunkjenkins.model.EventType.JSON_FILE;
 import static com.splunk.splunkjenkins.model.EventType.JENKINS_CONFIG;
-import static com.splunk.splunkjenkins.model.EventType.SLAVE_INFO;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.time.format.DateTimeFormatter.ISO_INSTANT;
-import static org.apache.commons.lang3.reflect.MethodUtils.getAccessibleMethod;
 
 /**
  * Provides helper methods for building and sending events to Splunk.
@@ -93,6 +92,12 @@ public class LogEventHelper {
             .put("GB", 1024 * 1024 * 1024L)
             .build();
 
+    private static final boolean REJECT_OVERSIZE_FILES = Boolean.getBoolean(LogEventHelper.class.getName() + ".rejectOversizeFiles");
+    private static final boolean ONLY_FILES_MODIFIED_IN_BUILD = Boolean.getBoolean(LogEventHelper.class.getName() + ".onlyFilesModifiedInBuild");
+    // node monitor data is rendered with toHtml if the data class has one
+    private static final NoArgMethodCache TO_HTML = new NoArgMethodCache("toHtml", String.class);
+    // cloud computers may have getUptime
+    private static final NoArgMethodCache UPTIME = new NoArgMethodCache("getUptime", null);
     private static boolean gzipEnabled = !Boolean.getBoolean(LogEventHelper.class.getName() + ".disableGzip");
 
     /**
@@ -107,7 +112,12 @@ public class LogEventHelper {
         if (config.canPostRaw(record.getEventType())) {
             postMethod = new HttpPost(record.getRawEndpoint(config));
             LOG.log(Level.FINEST, "sending raw data, source=" + record.getSource());
-            updateContent(postMethod, record.getMessageString(), false);
+            if (record.isBytes()) {
+                // file chunks are posted as is, without decoding to String
+                updateContent(postMethod, new ByteArrayEntity(record.getMessageBytes(), ContentType.create("text/plain", UTF_8)));
+            } else {
+                updateContent(postMethod, record.getMessageString(), false);
+            }
             postMethod.setHeader("x-splunk-request-channel", RAW_CHANNEL_ID);
         } else {
             postMethod = new HttpPost(config.getJsonUrl());
@@ -115,7 +125,13 @@ public class LogEventHelper {
             if (record.getEventType().needSplit()) {
                 //http event collector does not support raw event, need split records and append metadata to message body
                 StringWriter stout = new StringWriter();
-                String[] values = record.getMessageString().split("[\\r\\n]+");
+                List<String> values;
+                if (record.getEventType() == JSON_FILE) {
+                    values = Arrays.asList(record.getMessageString().split("[\\r\\n]+"));
+                } else {
+                    // stack traces are kept in one event
+                    values = MultiLineEventMerger.getInstance().merge(record.getMessageString());
+                }
                 for (String line : values) {
                     if (!isNullOrEmpty(line)) {
                         EventRecord lineRecord = new EventRecord(line, record.getEventType());
@@ -144,6 +160,10 @@ public class LogEventHelper {
         if (isJson) {
             entity.setContentType("application/json; profile=urn:splunk:event:1.0; charset=utf-8");
         }
+        updateContent(postMethod, entity);
+    }
+
+    private static void updateContent(HttpPost postMethod, AbstractHttpEntity entity) {
         if (gzipEnabled && entity.getContentLength() > GZIP_THRESHOLD) {
             postMethod.setEntity(new GzipCompressingEntity(entity));
         } else {
@@ -215,39 +235,13 @@ public class LogEventHelper {
         }
     }
 
-    private static long getUsedHeapSize() {
-        MemoryUsage usage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
-        long usedHeap = usage.getUsed();
-        return usedHeap;
-    }
-
     /**
      * <p>getMasterStats.</p>
      *
      * @return Jenkins master statistics with timestamp
      */
     public static Map<String, Object> getMasterStats() {
-        Jenkins instance = Jenkins.getInstance();
-        int computerSize = instance.getComputers().length;
-        int totalExecutors = instance.overallLoad.computeTotalExecutors();
-        int queueLength = instance.overallLoad.computeQueueLength();
-        int idleExecutors = instance.overallLoad.computeIdleExecutors();
-        Map<String, Object> event = new HashMap<>();
-        event.put("queue_length", queueLength);
-        event.put("total_computers", computerSize);
-        event.put("idle_executors", idleExecutors);
-        event.put("total_executors", totalExecutors);
-
-        long heapSize = getUsedHeapSize();
-        long heapMB = heapSize >> 20;
-        event.put("heap_size_mb", heapMB);
-        ThreadMXBean threadMXbean = ManagementFactory.getThreadMXBean();
-        int threadCount = threadMXbean.getThreadCount();
-        int daemonThreadCount = threadMXbean.getDaemonThreadCount();
-        event.put("thread_count", threadCount);
-        event.put("daemon_count", daemonThreadCount);
-        //event.put("time", new Date());
-        return event;
+        return MasterStatsSampler.Snapshot.sample().toMap();
     }
 
     /**
@@ -272,19 +266,40 @@ public class LogEventHelper {
         final String expanded = Util.replaceMacro(includes, envVars);
         final String exclude = Util.replaceMacro(excludes, envVars);
         try {
-            if (!ws.exists()) {
+            // list, filter and order the files on the node in one call
+            long modifiedSince = ONLY_FILES_MODIFIED_IN_BUILD ? build.getStartTimeInMillis() : 0;
+            FileScanCallable.Result scanResult = ws.act(new FileScanCallable(expanded, exclude, maxFileSize,
+                    REJECT_OVERSIZE_FILES, modifiedSince));
+            if (scanResult == null) {
                 LOG.warning("ws doesn't exist: " + ws.getRemote());
                 return eventCount;
             }
-
-            final FilePath[] paths = ws.list(expanded, exclude);
-            if (paths.length == 0) {
+            for (FileScanCallable.ScannedFile rejected : scanResult.getRejected()) {
+                listener.getLogger().println("skipped " + rejected.getPath() + " of " + rejected.getSize()
+                        + " bytes which is larger than " + maxFileSize + " bytes");
+            }
+            List<FileScanCallable.ScannedFile> files = scanResult.getFiles();
+            if (files.isEmpty()) {
                 LOG.warning("can not find files using includes:" + includes + " excludes:" + excludes + " in workspace:" + ws.getRemote());
                 return eventCount;
             }
+            final FilePath[] paths = new FilePath[files.size()];
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = ws.child(files.get(i).getPath());
+            }
             Map configMap = SplunkJenkinsInstallation.get().toMap();
             LogFileCallable fileCallable = new LogFileCallable(ws.getRemote(), build.getUrl(), configMap, sendFromSlave, maxFileSize);
+            // a retried upload resumes from the offsets acknowledged by previous one
+            fileCallable.setCheckpoints(FileCheckpoint.load(build.getRootDir()));
+            if (FileDedupIndex.isEnabled()) {
+                fileCallable.setKnownDigests(FileDedupIndex.get().getDigests(build.getParent().getUrl()));
+            }
             eventCount = fileCallable.sendFiles(paths);
+            List<FileCheckpoint> checkpoints = fileCallable.getUploadedCheckpoints();
+            FileCheckpoint.save(build.getRootDir(), checkpoints);
+            if (FileDedupIndex.isEnabled()) {
+                FileDedupIndex.get().update(build, checkpoints);
+            }
             listener.getLogger().println("sent " + Arrays.toString(paths) + " to splunk in " + eventCount + " events");
         } catch (IOException e) {
             LOG.log(Level.SEVERE, "failed to archive files", e);
@@ -486,7 +501,7 @@ public class LogEventHelper {
      * @param computer
      * @return the computer name
      */
-    private static String getNodeName(Computer computer) {
+    static String getNodeName(Computer computer) {
         if (computer == null) {
             return "N/A";
         }
@@ -591,36 +606,18 @@ public class LogEventHelper {
         return run;
     }
 
-    @SuppressFBWarnings("DE_MIGHT_IGNORE")
     private static Object getUpTime(Computer computer) {
-        Method method = getAccessibleMethod(computer.getClass(), "getUptime", new Class<?>[0]);
-        if (method != null) {
-            try { //cloud slave defined getUptime method
-                return method.invoke(computer, new Object[0]);
-            } catch (Exception e) {
-                //just ignore
-            }
-        }
-        return null;
+        return UPTIME.invoke(computer, null);
     }
 
-    private static Map<String, Object> getMonitorData(Computer computer, NodeMonitor monitor) {
+    static Map<String, Object> getMonitorData(Computer computer, NodeMonitor monitor) {
         Map monitorStatus = new HashMap();
         Object data = monitor.data(computer);
         if (data != null) {
             String monitorName = monitor.getClass().getSimpleName();
             //Jenkins monitors are designed for web pages, toString() OR toHtml may contain html code
-            String monitorData;
-            Method method = getAccessibleMethod(data.getClass(), "toHtml", new Class<?>[0]);
-            if (method != null) {
-                try {
-                    monitorData = (String) method.invoke(data, new Object[0]);
-                } catch (Exception e) {
-                    monitorData = data.toString();
-                }
-            } else {
-                monitorData = data.toString();
-            }
+            Object html = TO_HTML.invoke(data, null);
+            String monitorData = html != null ? (String) html : data.toString();
             Matcher matcher = ERROR_SPAN_CONTENT.matcher(monitorData);
             if (matcher.find()) {
                 monitorStatus.put(monitorName, "warning:" + matcher.group(1));
@@ -643,17 +640,13 @@ public class LogEventHelper {
         if (computers == null || computers.length == 0) {
             return slaveStatusMap;
         }
-        Collection<NodeMonitor> monitors = ComputerSet.getMonitors();
-        for (Computer computer : computers) {
-            Map slaveInfo = new HashMap();
-            slaveInfo.put(EVENT_CAUSED_BY, "monitor");
-            slaveInfo.putAll(getComputerStatus(computer));
-            for (NodeMonitor monitor : monitors) {
-                slaveInfo.putAll(getMonitorData(computer, monitor));
-            }
-            slaveStatusMap.put((String) slaveInfo.get(NODE_NAME), slaveInfo);
+        try {
+            return NodeMonitorCollector.collect(computers, ComputerSet.getMonitors());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.log(Level.WARNING, "interrupted while collecting node monitor data", e);
+            return slaveStatusMap;
         }
-        return slaveStatusMap;
     }
 
     /**
@@ -738,27 +731,13 @@ public class LogEventHelper {
     }
 
     /**
-     * Asynchronously updates slave information by sending a status event to Splunk
+     * Asynchronously updates slave information by sending a status event to Splunk,
+     * requests of the same node are coalesced by {@link NodeStatusDebouncer}
      *
      * @param nodeName the name of the slave node to update
      */
-    @SuppressFBWarnings("RV_RETURN_VALUE_IGNORED_BAD_PRACTICE")
     public static void updateSlaveInfoAsync(final String nodeName) {
-        Computer.threadPoolForRemoting.submit(new Runnable() {
-            @Override
-            public void run() {
-                if (nodeName != null) {
-                    Node node = Jenkins.getInstance().getNode(nodeName);
-                    if (node != null && node.toComputer() != null) {
-                        Computer computer = node.toComputer();
-                        Map event = getComputerStatus(computer);
-                        if (!event.isEmpty()) {
-                            SplunkLogService.getInstance().send(event, SLAVE_INFO);
-                        }
-                    }
-                }
-            }
-        });
+        NodeStatusDebouncer.getInstance().request(nodeName);
     }
 
     /**
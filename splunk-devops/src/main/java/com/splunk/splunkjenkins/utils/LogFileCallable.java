@@ -1,19 +1,41 @@
 package com.splunk.splunkjenkins.utils;
 
 import com.splunk.splunkjenkins.SplunkJenkinsInstallation;
+import com.splunk.splunkjenkins.model.EventRecord;
 import com.splunk.splunkjenkins.model.EventType;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.FilePath;
+import hudson.remoting.Pipe;
 import hudson.remoting.VirtualChannel;
 import hudson.util.ByteArrayOutputStream2;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import jenkins.util.JenkinsJVM;
+import org.apache.commons.io.input.CountingInputStream;
 import org.jenkinsci.remoting.RoleChecker;
+import shaded.splk.com.google.gson.JsonElement;
+import shaded.splk.com.google.gson.JsonParseException;
+import shaded.splk.com.google.gson.stream.MalformedJsonException;
 
 import java.io.*;
-import java.lang.ref.SoftReference;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static com.splunk.splunkjenkins.Constants.MIN_BUFFER_SIZE;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -21,7 +43,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 /**
  * Callable for sending log files from remote agents to Splunk.
  */
-public class LogFileCallable implements FilePath.FileCallable<Integer> {
+public class LogFileCallable implements FilePath.FileCallable<FileCheckpoint> {
     /**
      * Serialization version UID for this class.
      */
@@ -39,6 +61,32 @@ public class LogFileCallable implements FilePath.FileCallable<Integer> {
      * Defaults to 5 minutes, configurable via system property.
      */
     private final int WAIT_MINUTES = Integer.getInteger(TIMEOUT_NAME, 5);
+    /**
+     * Number of file groups uploaded in parallel.
+     */
+    private static final int PARALLELISM = Math.max(1, Integer.getInteger(LogFileCallable.class.getName() + ".parallelism", 4));
+    /**
+     * Max chunks of one upload queued but not acknowledged yet, more chunks are held back.
+     */
+    private static final int MAX_PENDING_CHUNKS = Integer.getInteger(LogFileCallable.class.getName() + ".maxPendingChunks", 256);
+    /**
+     * Max milliseconds a chunk waits for the queued bytes to drop below the budget.
+     */
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(Integer.getInteger(LogFileCallable.class.getName() + ".maxBackoff", 10));
+    /**
+     * Whether remote files read by controller are compressed on the node.
+     */
+    private static final boolean COMPRESS_REMOTE_READ = !Boolean.getBoolean(LogFileCallable.class.getName() + ".disableCompressedRead");
+    /**
+     * Uploads file groups, shared by all builds so the upload threads are bounded by {@link #PARALLELISM}.
+     */
+    private static final ThreadPoolExecutor UPLOAD_EXECUTOR;
+
+    static {
+        UPLOAD_EXECUTOR = new ThreadPoolExecutor(PARALLELISM, PARALLELISM, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "splunkins-file-upload"));
+        UPLOAD_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
     /**
      * Base name/path for the log file.
      */
@@ -63,6 +111,18 @@ public class LogFileCallable implements FilePath.FileCallable<Integer> {
      * Whether Splunk configuration has been initialized on remote agents.
      */
     private boolean enabledSplunkConfig = false;
+    /**
+     * Checkpoints of previous uploads keyed by source name.
+     */
+    private Map<String, FileCheckpoint> checkpoints = new HashMap<>();
+    /**
+     * Digests of files uploaded by previous builds keyed by path relative to the workspace, unchanged files are skipped.
+     */
+    private Map<String, String> knownDigests = new HashMap<>();
+    /**
+     * Checkpoints of this upload, only used on controller.
+     */
+    private final transient List<FileCheckpoint> uploadedCheckpoints = Collections.synchronizedList(new ArrayList<FileCheckpoint>());
 
     /**
      * Creates a LogFileCallable instance for sending log files to Splunk
@@ -83,36 +143,149 @@ public class LogFileCallable implements FilePath.FileCallable<Integer> {
     }
 
     /**
-     * Sends files to Splunk
+     * Sets the checkpoints of previous uploads, files are resumed from the acknowledged offset
+     *
+     * @param checkpoints the checkpoints keyed by source name
+     */
+    public void setCheckpoints(Map<String, FileCheckpoint> checkpoints) {
+        this.checkpoints = new HashMap<>(checkpoints);
+    }
+
+    /**
+     * Sets the digests of files uploaded by previous builds, a file with the same digest is not uploaded again
+     *
+     * @param knownDigests the digests keyed by path relative to the workspace
+     */
+    public void setKnownDigests(Map<String, String> knownDigests) {
+        this.knownDigests = new HashMap<>(knownDigests);
+    }
+
+    /**
+     * @return the checkpoints of the files sent by {@link #sendFiles(FilePath[])}
+     */
+    public List<FileCheckpoint> getUploadedCheckpoints() {
+        return new ArrayList<>(uploadedCheckpoints);
+    }
+
+    /**
+     * Sends files to Splunk, files are split into groups which are uploaded in parallel
      *
-     * @param paths array of FilePath objects to send
+     * @param paths array of FilePath objects to send, must be regular files such as the ones listed by {@link FileScanCallable}
      * @return number of events sent
      */
     public int sendFiles(FilePath[] paths) {
+        int groupCount = Math.max(1, Math.min(PARALLELISM, paths.length));
+        List<List<FilePath>> groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(new ArrayList<FilePath>());
+        }
+        for (int i = 0; i < paths.length; i++) {
+            groups.get(i % groupCount).add(paths[i]);
+        }
+        if (groupCount == 1) {
+            int[] result = sendGroup(groups.get(0));
+            logResult(paths.length, result);
+            return result[0];
+        }
+        int[] total = new int[2];
+        List<Future<int[]>> futures = new ArrayList<>(groupCount);
+        try {
+            for (final List<FilePath> group : groups) {
+                futures.add(UPLOAD_EXECUTOR.submit(new Callable<int[]>() {
+                    @Override
+                    public int[] call() {
+                        return sendGroup(group);
+                    }
+                }));
+            }
+            for (Future<int[]> future : futures) {
+                try {
+                    int[] result = future.get();
+                    total[0] += result[0];
+                    total[1] += result[1];
+                } catch (ExecutionException e) {
+                    LOG.log(Level.SEVERE, "archive file failed", e.getCause());
+                    total[1]++;
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.log(Level.SEVERE, "interrupted while archiving files", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            // the executor is shared, only the groups of this call are stopped
+            for (Future<int[]> future : futures) {
+                future.cancel(true);
+            }
+        }
+        logResult(paths.length, total);
+        return total[0];
+    }
+
+    /**
+     * Sends a group of files one by one
+     *
+     * @param paths the files in the group
+     * @return event count and failed file count
+     */
+    private int[] sendGroup(List<FilePath> paths) {
         int eventCount = 0;
+        int failedCount = 0;
         for (FilePath path : paths) {
             try {
-                if (path.isDirectory()) {
-                    continue;
-                }
+                FileCheckpoint checkpoint;
                 if (sendFromSlave) {
                     LOG.log(Level.INFO, "uploading from agent:" + path.getName());
-                    eventCount += path.act(this);
-                    LOG.log(Level.FINE, "sent in " + eventCount + " batches");
+                    checkpoint = path.act(this);
+                    LOG.log(Level.FINE, "sent in " + checkpoint.getEventCount() + " batches");
+                } else if (!path.isRemote()) {
+                    LOG.log(Level.FINE, "uploading from built-in node:" + path.getName());
+                    checkpoint = send(new File(path.getRemote()));
+                    awaitAcknowledged(checkpoint);
                 } else {
-                    InputStream in = path.read();
-                    try {
-                        LOG.log(Level.FINE, "uploading from built-in node:" + path.getName());
-                        eventCount += send(path.getRemote(), in);
-                    } finally {
-                        in.close();
+                    checkpoint = getDuplicateCheckpoint(path);
+                    if (checkpoint == null) {
+                        checkpoint = getCompletedCheckpoint(path);
+                    }
+                    if (checkpoint == null) {
+                        RemoteFileStream in = read(path);
+                        try {
+                            LOG.log(Level.FINE, "uploading from built-in node:" + path.getName());
+                            checkpoint = send(path.getRemote(), in);
+                            // a failed read on the node ends the stream early, the file must not be reported as sent
+                            in.checkCompleted();
+                        } finally {
+                            in.close();
+                        }
+                        awaitAcknowledged(checkpoint);
                     }
                 }
+                // the chunks acknowledged before a failure are still saved, so a retry resumes after them
+                uploadedCheckpoints.add(checkpoint);
+                if (checkpoint.isFailed()) {
+                    LOG.log(Level.SEVERE, "archive file failed, some chunks of {0} were not delivered", checkpoint.getSource());
+                    failedCount++;
+                } else {
+                    eventCount += checkpoint.getEventCount();
+                }
+            } catch (InterruptedException e) {
+                LOG.log(Level.SEVERE, "interrupted while archiving file " + path.getRemote(), e);
+                failedCount++;
+                Thread.currentThread().interrupt();
+                break;
             } catch (Exception e) {
                 LOG.log(Level.SEVERE, "archive file failed", e);
+                failedCount++;
             }
         }
-        return eventCount;
+        return new int[]{eventCount, failedCount};
+    }
+
+    private void logResult(int fileCount, int[] result) {
+        if (result[1] > 0) {
+            LOG.log(Level.WARNING, "failed to archive {0} of {1} file(s) for {2}", new Object[]{result[1], fileCount, buildUrl});
+        } else {
+            LOG.log(Level.FINE, "archived {0} file(s) in {1} events for {2}", new Object[]{fileCount, result[0], buildUrl});
+        }
     }
 
     /**
@@ -120,57 +293,343 @@ public class LogFileCallable implements FilePath.FileCallable<Integer> {
      *
      * @param fileName the name of the file being sent
      * @param input the InputStream containing the file content
-     * @return number of events sent
+     * @return the checkpoint of the upload
      * @throws IOException if an I/O error occurs
      * @throws InterruptedException if the operation is interrupted
      */
-    @SuppressFBWarnings("DLS_DEAD_LOCAL_STORE")
-    public Integer send(String fileName, InputStream input) throws IOException, InterruptedException {
-        long throttleSize = SplunkJenkinsInstallation.get().getMaxEventsBatchSize();
-        if (!SplunkJenkinsInstallation.get().isRawEventEnabled()) {
-            //if raw event is not supported, we need split the content line by line and append metadata to each line
-            throttleSize = throttleSize / 2;
-        }
-        //always use unix style path because windows slave maybe launched by ssh
-        String sourceName = fileName.replace("\\", "/");
-        String ws_posix_path = baseName.replace("\\", "/");
-        if (sourceName.startsWith(ws_posix_path)) {
-            sourceName = sourceName.substring(ws_posix_path.length() + 1);
-        }
-        sourceName = buildUrl + sourceName;
-        boolean jsonFile = fileName.endsWith(".json");
-        EventType eventType = EventType.FILE;
-        if (jsonFile && SplunkJenkinsInstallation.get().isRawEventEnabled()) {
-            throttleSize = maxFileSize;
-            eventType = EventType.JSON_FILE;
+    public FileCheckpoint send(String fileName, InputStream input) throws IOException, InterruptedException {
+        String sourceName = getSourceName(fileName);
+        if (isJsonFile(fileName)) {
+            return sendJson(sourceName, input);
         }
+        long throttleSize = getThrottleSize();
+        FileCheckpoint checkpoint = new FileCheckpoint(sourceName);
+        MessageDigest md = FileCheckpoint.newDigest();
         ByteArrayOutputStream2 logText = new ByteArrayOutputStream2(MIN_BUFFER_SIZE);
         long totalSize = 0;
-        Integer count = 0;
         int n;
         byte[] buffer = new byte[MIN_BUFFER_SIZE];
-        while ((n = input.read(buffer)) >= 0) {
-            totalSize += n;
-            for (int i = 0; i < n; i++) {
-                logText.write(buffer[i]);
-                if (buffer[i] == '\n' && logText.size() > throttleSize) {
-                    // file is too big to send in one request, use EventType.FILE
-                    eventType = EventType.FILE;
-                    flushLog(sourceName, logText, eventType);
-                    count++;
+        while (!checkpoint.isFailed() && (n = input.read(buffer)) >= 0) {
+            int written = 0;
+            // the first line break which makes the chunk larger than throttleSize
+            int i = (int) Math.max(0, Math.min(n, throttleSize - logText.size()));
+            for (; i < n; i++) {
+                if (buffer[i] == '\n') {
+                    logText.write(buffer, written, i + 1 - written);
+                    md.update(buffer, written, i + 1 - written);
+                    written = i + 1;
+                    flushLog(sourceName, logText, EventType.FILE, checkpoint, totalSize + written, md);
+                    i = (int) Math.min(n, written + throttleSize) - 1;
                 }
             }
+            logText.write(buffer, written, n - written);
+            md.update(buffer, written, n - written);
+            totalSize += n;
             if (maxFileSize != 0 && totalSize > maxFileSize) {
                 logText.write(("file truncated to size:" + totalSize).getBytes(UTF_8));
                 SplunkLogService.getInstance().send(sourceName + " too large", "large_file");
                 break;
             }
         }
+        checkpoint.setSize(totalSize);
         if (logText.size() > 0) {
-            flushLog(sourceName, logText, eventType);
-            count++;
+            flushLog(sourceName, logText, EventType.FILE, checkpoint, totalSize, md);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Sends a local file to Splunk via HTTP event collector, the file is read in chunks split at line breaks
+     *
+     * @param file the file to send
+     * @return the checkpoint of the upload, the file is skipped if it was sent completely before
+     * @throws IOException if an I/O error occurs
+     * @throws InterruptedException if the operation is interrupted
+     */
+    public FileCheckpoint send(File file) throws IOException, InterruptedException {
+        String sourceName = getSourceName(file.getAbsolutePath());
+        FileCheckpoint duplicate = getDuplicateCheckpoint(new FilePath(file));
+        if (duplicate != null) {
+            return duplicate;
+        }
+        if (isJsonFile(file.getName())) {
+            FileCheckpoint completed = getCompletedCheckpoint(new FilePath(file));
+            if (completed != null) {
+                return completed;
+            }
+            try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+                return sendJson(sourceName, input);
+            }
+        }
+        MessageDigest md = FileCheckpoint.newDigest();
+        try (LineChunkReader chunkReader = new LineChunkReader(file, getThrottleSize(), maxFileSize)) {
+            FileCheckpoint checkpoint = resumeCheckpoint(sourceName, chunkReader, md);
+            if (checkpoint.isComplete()) {
+                LOG.log(Level.FINE, "skipped {0} which was already sent", sourceName);
+                return checkpoint;
+            }
+            byte[] chunk = chunkReader.next();
+            if (chunk == null) {
+                return checkpoint;
+            }
+            byte[] nextChunk = chunkReader.next();
+            long endOffset = chunkReader.getPosition() - (nextChunk == null ? 0 : nextChunk.length);
+            while (chunk != null && !checkpoint.isFailed()) {
+                md.update(chunk);
+                if (nextChunk == null && chunkReader.isTruncated()) {
+                    byte[] notice = ("file truncated to size:" + chunkReader.getPosition()).getBytes(UTF_8);
+                    chunk = Arrays.copyOf(chunk, chunk.length + notice.length);
+                    System.arraycopy(notice, 0, chunk, chunk.length - notice.length, notice.length);
+                    SplunkLogService.getInstance().send(sourceName + " too large", "large_file");
+                }
+                flushLog(sourceName, chunk, EventType.FILE, checkpoint, endOffset, md);
+                chunk = nextChunk;
+                if (chunk != null) {
+                    endOffset += chunk.length;
+                    nextChunk = chunkReader.next();
+                }
+            }
+            return checkpoint;
         }
-        return count;
+    }
+
+    /**
+     * Sends a json file as one event per top level value, a top level array is split into its elements,
+     * so both json arrays and newline delimited json are streamed in batches of maxEventsBatchSize
+     *
+     * @param sourceName the source name of the file
+     * @param input      the file content
+     * @return the checkpoint of the upload, it is complete only after the whole file is acknowledged
+     * @throws IOException if an I/O error occurs
+     * @throws InterruptedException if the operation is interrupted
+     */
+    private FileCheckpoint sendJson(String sourceName, InputStream input) throws IOException, InterruptedException {
+        FileCheckpoint checkpoint = new FileCheckpoint(sourceName);
+        // the elements are posted as BATCH_JSON records, so the queue can not tell they are json file events
+        if (SplunkJenkinsInstallation.get().isEventDisabled(EventType.JSON_FILE)) {
+            LOG.log(Level.FINE, "config invalid or eventType {0} is disabled, skipped {1}", new Object[]{EventType.JSON_FILE, sourceName});
+            return checkpoint;
+        }
+        MessageDigest md = FileCheckpoint.newDigest();
+        CountingInputStream counter = new CountingInputStream(input);
+        long batchSize = SplunkJenkinsInstallation.get().getMaxEventsBatchSize();
+        StringBuilder batch = new StringBuilder();
+        boolean completed = false;
+        int elementCount = 0;
+        JsonStreamSplitter splitter = new JsonStreamSplitter(new InputStreamReader(new DigestInputStream(counter, md), UTF_8));
+        try {
+            JsonElement element = null;
+            while (!checkpoint.isFailed() && (element = splitter.next()) != null) {
+                if (batch.length() > batchSize) {
+                    // a partially sent json file can not be resumed, only the last batch moves the checkpoint
+                    flushJson(batch, checkpoint, 0, null);
+                }
+                EventRecord record = new EventRecord(element, EventType.JSON_FILE);
+                record.setSource(sourceName);
+                batch.append(LogEventHelper.toJson(record)).append('\n');
+                elementCount++;
+                if (maxFileSize != 0 && counter.getByteCount() > maxFileSize) {
+                    SplunkLogService.getInstance().send(sourceName + " too large, sent first " + counter.getByteCount() + " bytes", "large_file");
+                    break;
+                }
+            }
+            completed = element == null;
+        } catch (JsonParseException | MalformedJsonException | EOFException e) {
+            LOG.log(Level.WARNING, "failed to parse json file " + sourceName, e);
+            // the elements before the error are still sent
+            SplunkLogService.getInstance().send(sourceName + " is not valid json, sent first " + elementCount
+                    + " elements: " + e.getMessage(), "invalid_json");
+        }
+        long totalSize = counter.getByteCount();
+        checkpoint.setSize(totalSize);
+        if (batch.length() > 0) {
+            if (completed) {
+                flushJson(batch, checkpoint, totalSize, FileCheckpoint.toHex(md));
+            } else {
+                flushJson(batch, checkpoint, 0, null);
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Sends the batch of json events and clears it
+     *
+     * @param batch      the json events separated by line break
+     * @param checkpoint the checkpoint which tracks acknowledged batches
+     * @param endOffset  the file offset after the batch, 0 if the batch does not end the file
+     * @param digest     the digest of the content before endOffset
+     */
+    private void flushJson(StringBuilder batch, FileCheckpoint checkpoint, long endOffset, String digest) throws InterruptedException {
+        if (checkpoint.isFailed()) {
+            batch.setLength(0);
+            return;
+        }
+        if (!awaitQueueCapacity(checkpoint, batch.length())) {
+            checkpoint.fail();
+            batch.setLength(0);
+            return;
+        }
+        EventRecord record = new EventRecord(batch.toString(), EventType.BATCH_JSON);
+        record.setSource(checkpoint.getSource());
+        checkpoint.addChunk(record, endOffset, digest);
+        if (!SplunkLogService.getInstance().send(record)) {
+            checkpoint.fail();
+        }
+        batch.setLength(0);
+    }
+
+    /**
+     * Moves the chunkReader to the acknowledged offset of previous upload if the content before it was not changed
+     *
+     * @param sourceName the source name of the file
+     * @param chunkReader    the chunkReader of the file
+     * @param md         the digest to be updated with the skipped content
+     * @return the checkpoint of this upload
+     * @throws IOException if the file can not be read
+     */
+    private FileCheckpoint resumeCheckpoint(String sourceName, LineChunkReader chunkReader, MessageDigest md) throws IOException {
+        FileCheckpoint previous = checkpoints.get(sourceName);
+        if (previous != null && previous.getOffset() > 0 && previous.getOffset() <= chunkReader.getLimit()) {
+            chunkReader.digest(previous.getOffset(), md);
+            if (FileCheckpoint.toHex(md).equals(previous.getDigest())) {
+                LOG.log(Level.INFO, "resume uploading {0} from offset {1}", new Object[]{sourceName, previous.getOffset()});
+                chunkReader.seek(previous.getOffset());
+                return FileCheckpoint.resume(sourceName, previous.getOffset(), previous.getDigest(), chunkReader.getLimit());
+            }
+            md.reset();
+        }
+        FileCheckpoint checkpoint = new FileCheckpoint(sourceName);
+        checkpoint.setSize(chunkReader.getLimit());
+        return checkpoint;
+    }
+
+    /**
+     * Checks whether the file has the same digest as the one uploaded by a previous build,
+     * the digest is computed on the node which owns the file
+     *
+     * @param path the file
+     * @return the checkpoint of the skipped file, or null if the file need be uploaded
+     */
+    private FileCheckpoint getDuplicateCheckpoint(FilePath path) throws IOException, InterruptedException {
+        String knownDigest = knownDigests.get(getRelativeName(path.getRemote()));
+        if (knownDigest == null) {
+            return null;
+        }
+        String digest = path.digest();
+        if (!knownDigest.equals(digest)) {
+            return null;
+        }
+        String sourceName = getSourceName(path.getRemote());
+        LOG.log(Level.FINE, "skipped {0} which is not changed since previous build", sourceName);
+        return FileCheckpoint.duplicate(sourceName, digest, path.length());
+    }
+
+    /**
+     * Checks whether a remote file was fully sent by previous upload, the digest is computed on the remote node
+     *
+     * @param path the remote file
+     * @return the checkpoint of previous upload if the file was not changed, otherwise null
+     */
+    private FileCheckpoint getCompletedCheckpoint(FilePath path) throws IOException, InterruptedException {
+        FileCheckpoint previous = checkpoints.get(getSourceName(path.getRemote()));
+        if (previous == null || !previous.isComplete() || previous.getOffset() != path.length()) {
+            return null;
+        }
+        if (!previous.getDigest().equals(path.digest())) {
+            return null;
+        }
+        LOG.log(Level.FINE, "skipped {0} which was already sent", previous.getSource());
+        return FileCheckpoint.resume(previous.getSource(), previous.getOffset(), previous.getDigest(), previous.getOffset());
+    }
+
+    /**
+     * Opens a remote file, the content is gzip compressed on the node before it crosses the remoting channel
+     *
+     * @param path the remote file
+     * @return the uncompressed content
+     */
+    private RemoteFileStream read(FilePath path) throws IOException, InterruptedException {
+        if (!COMPRESS_REMOTE_READ) {
+            return new RemoteFileStream(path.read(), null);
+        }
+        Pipe pipe = Pipe.createRemoteToLocal();
+        Future<Void> reader = path.actAsync(new CompressedFileReader(pipe));
+        return new RemoteFileStream(new GZIPInputStream(pipe.getIn(), MIN_BUFFER_SIZE), reader);
+    }
+
+    /**
+     * Waits until the chunks of the file are acknowledged so the checkpoint can be saved,
+     * returns early once a chunk failed since it will never be acknowledged
+     *
+     * @param checkpoint the checkpoint of the file
+     */
+    private void awaitAcknowledged(FileCheckpoint checkpoint) throws InterruptedException {
+        if (!checkpoint.awaitAcknowledged(TimeUnit.MINUTES.toMillis(WAIT_MINUTES)) && !checkpoint.isFailed()) {
+            LOG.log(Level.WARNING, "chunks of {0} were not acknowledged in {1} minutes," +
+                    " please adjust the value by passing -D{2}=minutes to the jvm parameter", new Object[]{checkpoint.getSource(), WAIT_MINUTES, TIMEOUT_NAME});
+        }
+    }
+
+    /**
+     * Waits until the upload has fewer than {@link #MAX_PENDING_CHUNKS} chunks in flight,
+     * and the sending queue has room, so file chunks do not flood the queue which is shared with other events.
+     * If the queued bytes are still over budget after {@link #MAX_BACKOFF_MILLIS}, a large chunk is spilled to disk when it is queued
+     *
+     * @param checkpoint  the checkpoint of the upload
+     * @param payloadSize the size of the chunk
+     * @return false if the chunks were still not acknowledged after the timeout, such as Splunk is not reachable
+     */
+    private boolean awaitQueueCapacity(FileCheckpoint checkpoint, long payloadSize) throws InterruptedException {
+        if (!checkpoint.awaitInFlight(MAX_PENDING_CHUNKS, TimeUnit.MINUTES.toMillis(WAIT_MINUTES))) {
+            if (!checkpoint.isFailed()) {
+                LOG.log(Level.SEVERE, "chunks of {0} were still not acknowledged after {1} minutes, {2}",
+                        new Object[]{checkpoint.getSource(), WAIT_MINUTES, SplunkLogService.getInstance().getStats()});
+            }
+            return false;
+        }
+        if (!SplunkLogService.getInstance().awaitCapacity(payloadSize, MAX_BACKOFF_MILLIS)) {
+            LOG.log(Level.FINE, "queued bytes over budget, {0}", SplunkLogService.getInstance().getStats());
+        }
+        return true;
+    }
+
+    /**
+     * @param fileName the file path
+     * @return the source name which is relative to the workspace and prefixed with build url
+     */
+    private String getSourceName(String fileName) {
+        return buildUrl + getRelativeName(fileName);
+    }
+
+    /**
+     * @param fileName the file path
+     * @return the unix style path relative to the workspace
+     */
+    private String getRelativeName(String fileName) {
+        //always use unix style path because windows slave maybe launched by ssh
+        String sourceName = fileName.replace("\\", "/");
+        String ws_posix_path = baseName.replace("\\", "/");
+        if (sourceName.startsWith(ws_posix_path)) {
+            sourceName = sourceName.substring(ws_posix_path.length() + 1);
+        }
+        return sourceName;
+    }
+
+    private boolean isJsonFile(String fileName) {
+        return fileName.endsWith(".json") || fileName.endsWith(".ndjson") || fileName.endsWith(".jsonl");
+    }
+
+    /**
+     * @return the size of content sent in one request
+     */
+    private long getThrottleSize() {
+        long throttleSize = SplunkJenkinsInstallation.get().getMaxEventsBatchSize();
+        if (!SplunkJenkinsInstallation.get().isRawEventEnabled()) {
+            //if raw event is not supported, we need split the content line by line and append metadata to each line
+            throttleSize = throttleSize / 2;
+        }
+        return throttleSize;
     }
 
     /**
@@ -190,42 +649,57 @@ public class LogFileCallable implements FilePath.FileCallable<Integer> {
      * @param source the source name for the log data
      * @param out the ByteArrayOutputStream containing the log data
      * @param eventType the type of event
+     * @param checkpoint the checkpoint which tracks acknowledged chunks
+     * @param endOffset the file offset after the chunk
+     * @param md the digest of the file content before endOffset
      */
-    private void flushLog(String source, ByteArrayOutputStream out, EventType eventType) {
-        try {
-            String text = out.toString("UTF-8");
-            SoftReference<String> textRef = new SoftReference<>(text);
-            SplunkLogService.getInstance().send(textRef, eventType, source);
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
+    private void flushLog(String source, ByteArrayOutputStream out, EventType eventType,
+                          FileCheckpoint checkpoint, long endOffset, MessageDigest md) throws InterruptedException {
+        flushLog(source, out.toByteArray(), eventType, checkpoint, endOffset, md);
         out.reset();
     }
 
+    /**
+     * Sends a chunk of file to Splunk, the bytes are posted as is for raw events
+     *
+     * @param source the source name for the log data
+     * @param chunk the log data
+     * @param eventType the type of event
+     * @param checkpoint the checkpoint which tracks acknowledged chunks
+     * @param endOffset the file offset after the chunk
+     * @param md the digest of the file content before endOffset
+     */
+    private void flushLog(String source, byte[] chunk, EventType eventType,
+                          FileCheckpoint checkpoint, long endOffset, MessageDigest md) throws InterruptedException {
+        if (checkpoint.isFailed()) {
+            // the offset can not move over the failed chunk, the rest of the file is sent by a retry
+            return;
+        }
+        if (!awaitQueueCapacity(checkpoint, chunk.length)) {
+            checkpoint.fail();
+            return;
+        }
+        EventRecord record = new EventRecord(chunk, eventType);
+        record.setSource(source);
+        checkpoint.addChunk(record, endOffset, FileCheckpoint.toHex(md));
+        if (!SplunkLogService.getInstance().send(record)) {
+            // disabled event type, invalid config or full queue
+            checkpoint.fail();
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
-    public Integer invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+    public FileCheckpoint invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
         if (!JenkinsJVM.isJenkinsJVM()) {
             //running on slave node, need init config
             initSplunkins();
         }
-        InputStream input = new FileInputStream(f);
-        try {
-            long expireTime = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(WAIT_MINUTES);
-            int count = send(f.getAbsolutePath(), input);
-            while (SplunkLogService.getInstance().getQueueSize() > 0 && System.currentTimeMillis() < expireTime) {
-                Thread.sleep(500);
-            }
-            if (System.currentTimeMillis() > expireTime) {
-                LOG.log(Level.SEVERE, "sending file timeout in " + WAIT_MINUTES + " minutes," +
-                        " please adjust the value by passing -D" + TIMEOUT_NAME + "=minutes to slave jvm parameter");
-            }
-            SplunkLogService.getInstance().stopWorker();
-            SplunkLogService.getInstance().releaseConnection();
-            return count;
-        } finally {
-            input.close();
-        }
+        FileCheckpoint checkpoint = send(f);
+        // the checkpoint returned to controller contains the chunks acknowledged so far,
+        // the queue on the agent is drained by RemoteUtils once the channel is closed
+        awaitAcknowledged(checkpoint);
+        return checkpoint;
     }
 
     /** {@inheritDoc} */
@@ -233,4 +707,98 @@ public class LogFileCallable implements FilePath.FileCallable<Integer> {
     public void checkRoles(RoleChecker roleChecker) throws SecurityException {
 
     }
+
+    /**
+     * Writes the gzip compressed file content into a pipe, runs on the node which owns the file
+     */
+    private static class CompressedFileReader implements FilePath.FileCallable<Void> {
+        private static final long serialVersionUID = 1L;
+        private final Pipe pipe;
+
+        CompressedFileReader(Pipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public Void invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+            // log files compress well even at the fastest level, which keeps the agent cpu low
+            OutputStream out = new GZIPOutputStream(pipe.getOut(), MIN_BUFFER_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+            try (InputStream in = new FileInputStream(f)) {
+                byte[] buffer = new byte[MIN_BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+            return null;
+        }
+
+        @Override
+        public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+
+        }
+    }
+
+    /**
+     * Content of a remote file, tracks the reader on the node so a failed read is not taken as the end of file
+     */
+    private class RemoteFileStream extends FilterInputStream {
+        private final Future<Void> reader;
+        private boolean eof;
+
+        RemoteFileStream(InputStream in, Future<Void> reader) {
+            super(in);
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            eof = b < 0;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            eof = n < 0;
+            return n;
+        }
+
+        /**
+         * Checks the reader on the node once the content is consumed
+         *
+         * @throws IOException if the file was not read completely on the node
+         */
+        void checkCompleted() throws IOException, InterruptedException {
+            if (reader == null || !eof) {
+                // the content was not consumed to the end, such as the file is truncated to the max size
+                return;
+            }
+            try {
+                reader.get(WAIT_MINUTES, TimeUnit.MINUTES);
+            } catch (ExecutionException e) {
+                throw new IOException("failed to read remote file", e.getCause());
+            } catch (TimeoutException e) {
+                throw new IOException("remote file reader did not complete in " + WAIT_MINUTES + " minutes", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (reader != null && !reader.isDone()) {
+                    reader.cancel(true);
+                }
+            }
+        }
+    }
 }
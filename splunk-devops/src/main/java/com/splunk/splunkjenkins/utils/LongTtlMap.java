@@ -0,0 +1,246 @@
+package com.splunk.splunkjenkins.utils;
+
+import java.util.Arrays;
+
+/**
+ * A map of primitive long keys and values, such as queue id to timestamp, with open addressing.
+ * An entry expires ttl milliseconds after it was put, expired entries are dropped when the table is full
+ * before it grows. Once maxEntries is reached, the oldest entries are evicted, a sixteenth of maxEntries at a time
+ * so the scan of the table is not repeated on every put.
+ * {@link Long#MIN_VALUE} is reserved and can not be used as key.
+ */
+public class LongTtlMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+    private static final int EVICT_FRACTION = 16;
+    private final long ttl;
+    private final int maxEntries;
+    private long[] keys;
+    private long[] values;
+    private long[] times;
+    private int size;
+    // no more than the put time of any entry, the table is only scanned for expired entries once it is older than ttl
+    private long oldestTime;
+    private long expiredCount;
+    private long evictedCount;
+
+    /**
+     * @param ttl        milliseconds an entry is kept
+     * @param maxEntries max number of entries
+     */
+    public LongTtlMap(long ttl, int maxEntries) {
+        this.ttl = ttl;
+        this.maxEntries = Math.max(1, maxEntries);
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new long[capacity];
+        times = new long[capacity];
+        size = 0;
+        oldestTime = Long.MAX_VALUE;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+    }
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(long key, long value) {
+        put(key, value, System.currentTimeMillis());
+    }
+
+    synchronized void put(long key, long value, long now) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+            times[index] = now;
+            return;
+        }
+        if (size >= maxEntries) {
+            if (now - oldestTime > ttl) {
+                rehash(keys.length, now);
+            }
+            if (size >= maxEntries) {
+                evictOldest(now);
+            }
+        }
+        // keep the load factor no more than 0.5
+        if ((size + 1) * 2 > keys.length) {
+            if (now - oldestTime > ttl) {
+                rehash(keys.length, now);
+            }
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2, now);
+            }
+        }
+        insert(key, value, now);
+    }
+
+    private void insert(long key, long value, long time) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        while (keys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        times[i] = time;
+        size++;
+        oldestTime = Math.min(oldestTime, time);
+    }
+
+    /**
+     * Rebuilds the table without the expired entries
+     */
+    private void rehash(int capacity, long now) {
+        rebuild(capacity, now, Long.MIN_VALUE, 0);
+    }
+
+    /**
+     * Rebuilds the table without the expired entries and the entries put before evictBefore,
+     * at most evictAtTime entries put exactly at evictBefore are evicted too
+     */
+    private void rebuild(int capacity, long now, long evictBefore, int evictAtTime) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        long[] oldTimes = times;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) {
+                continue;
+            }
+            if (oldTimes[i] < evictBefore) {
+                evictedCount++;
+            } else if (oldTimes[i] == evictBefore && evictAtTime > 0) {
+                evictAtTime--;
+                evictedCount++;
+            } else if (now - oldTimes[i] > ttl) {
+                expiredCount++;
+            } else {
+                insert(oldKeys[i], oldValues[i], oldTimes[i]);
+            }
+        }
+    }
+
+    /**
+     * Evicts the oldest entries, the cost of sorting the put times is shared by the puts until the map is full again
+     */
+    private void evictOldest(long now) {
+        long[] sortedTimes = new long[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                sortedTimes[n++] = times[i];
+            }
+        }
+        Arrays.sort(sortedTimes);
+        int count = Math.max(1, Math.min(size, maxEntries / EVICT_FRACTION));
+        long threshold = sortedTimes[count - 1];
+        int older = 0;
+        while (sortedTimes[older] < threshold) {
+            older++;
+        }
+        rebuild(keys.length, now, threshold, count - older);
+    }
+
+    /**
+     * Removes the entry and shifts the following entries of the probe sequence back, so no tombstone is needed
+     */
+    private void removeAt(int index) {
+        int mask = keys.length - 1;
+        int i = index;
+        int j = index;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) {
+                break;
+            }
+            int k = slot(keys[j]);
+            // the entry at j stays if its home slot is cyclically in (i, j]
+            if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                continue;
+            }
+            keys[i] = keys[j];
+            values[i] = values[j];
+            times[i] = times[j];
+            i = j;
+        }
+        keys[i] = EMPTY;
+        size--;
+    }
+
+    /**
+     * @param key          the key
+     * @param defaultValue the value returned if the key is absent or expired
+     * @return the value
+     */
+    public long get(long key, long defaultValue) {
+        return get(key, defaultValue, System.currentTimeMillis());
+    }
+
+    synchronized long get(long key, long defaultValue, long now) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return defaultValue;
+        }
+        if (now - times[index] > ttl) {
+            removeAt(index);
+            expiredCount++;
+            return defaultValue;
+        }
+        return values[index];
+    }
+
+    /**
+     * @param key          the key
+     * @param defaultValue the value returned if the key is absent
+     * @return the removed value
+     */
+    public synchronized long remove(long key, long defaultValue) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return defaultValue;
+        }
+        long value = values[index];
+        removeAt(index);
+        return value;
+    }
+
+    /**
+     * @return number of entries, including expired ones not dropped yet
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return number of entries dropped after ttl
+     */
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * @return number of entries evicted because of maxEntries
+     */
+    public synchronized long getEvictedCount() {
+        return evictedCount;
+    }
+}
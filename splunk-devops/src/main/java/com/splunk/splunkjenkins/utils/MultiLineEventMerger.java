@@ -0,0 +1,113 @@
+package com.splunk.splunkjenkins.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Merges the lines of file and console text into multi-line events, so a stack trace is sent as one event.
+ * If eventStartPattern is set, a line which does not match it is appended to the previous event, such as
+ * {@code \d{4}-\d{2}-\d{2}[ T]\d{2}:\d{2}} for log4j style timestamp prefix.
+ * Otherwise a line which matches continuationPattern is appended, the default one matches java stack trace lines.
+ * An event has at most maxEventLines lines.
+ */
+public class MultiLineEventMerger {
+    private static final Logger LOG = Logger.getLogger(MultiLineEventMerger.class.getName());
+    private static final String PROPERTY_PREFIX = MultiLineEventMerger.class.getName();
+    private static final String DEFAULT_CONTINUATION_PATTERN = "\\s+at |\\s*\\.\\.\\. \\d+ (?:more|common frames omitted)|\\s*Caused by: |\\s+Suppressed: ";
+    private static final Pattern LINE_BREAK = Pattern.compile("[\\r\\n]+");
+    private static final MultiLineEventMerger INSTANCE = new MultiLineEventMerger(
+            compile(System.getProperty(PROPERTY_PREFIX + ".eventStartPattern")),
+            compile(System.getProperty(PROPERTY_PREFIX + ".continuationPattern", DEFAULT_CONTINUATION_PATTERN)),
+            Integer.getInteger(PROPERTY_PREFIX + ".maxEventLines", 256));
+    private final Pattern eventStartPattern;
+    private final Pattern continuationPattern;
+    private final int maxEventLines;
+
+    /**
+     * @param eventStartPattern   the pattern of the first line of an event, null to use continuationPattern
+     * @param continuationPattern the pattern of lines appended to previous event, null to disable merging
+     *                            if eventStartPattern is null too
+     * @param maxEventLines       max lines of an event
+     */
+    MultiLineEventMerger(Pattern eventStartPattern, Pattern continuationPattern, int maxEventLines) {
+        this.eventStartPattern = eventStartPattern;
+        this.continuationPattern = continuationPattern;
+        this.maxEventLines = Math.max(1, maxEventLines);
+    }
+
+    /**
+     * @return the merger configured by system properties
+     */
+    public static MultiLineEventMerger getInstance() {
+        return INSTANCE;
+    }
+
+    private static Pattern compile(String regex) {
+        if (isNullOrEmpty(regex)) {
+            return null;
+        }
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            LOG.log(Level.WARNING, "invalid multi-line event pattern " + regex, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param line the line text without line break
+     * @return true if the line belongs to the previous event
+     */
+    public boolean isContinuation(String line) {
+        if (eventStartPattern != null) {
+            return !eventStartPattern.matcher(line).lookingAt();
+        }
+        return continuationPattern != null && continuationPattern.matcher(line).lookingAt();
+    }
+
+    /**
+     * @param lineCount the line count of the previous event
+     * @param line      the next line
+     * @return true if the line can be appended to the previous event
+     */
+    public boolean canAppend(int lineCount, String line) {
+        return lineCount < maxEventLines && isContinuation(line);
+    }
+
+    /**
+     * Splits the text by line breaks and merges the lines into events, empty lines are dropped
+     *
+     * @param text the text
+     * @return the events
+     */
+    public List<String> merge(String text) {
+        List<String> events = new ArrayList<>();
+        StringBuilder event = null;
+        int lineCount = 0;
+        for (String line : LINE_BREAK.split(text)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (event != null && canAppend(lineCount, line)) {
+                event.append('\n').append(line);
+                lineCount++;
+            } else {
+                if (event != null) {
+                    events.add(event.toString());
+                }
+                event = new StringBuilder(line);
+                lineCount = 1;
+            }
+        }
+        if (event != null) {
+            events.add(event.toString());
+        }
+        return events;
+    }
+}
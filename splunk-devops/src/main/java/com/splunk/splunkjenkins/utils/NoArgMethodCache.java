@@ -0,0 +1,62 @@
+package com.splunk.splunkjenkins.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import static org.apache.commons.lang3.reflect.MethodUtils.getAccessibleMethod;
+
+/**
+ * Caches the handle of an optional public no-argument method per class, such as getUptime of cloud computers.
+ * The lookup runs once per class, a class without the method is cached too so it is not looked up again.
+ */
+class NoArgMethodCache extends ClassValue<MethodHandle> {
+    private static final MethodType GENERIC_TYPE = MethodType.methodType(Object.class, Object.class);
+    private final String methodName;
+    private final Class<?> returnType;
+
+    /**
+     * @param methodName the method name
+     * @param returnType the required return type, null for any
+     */
+    NoArgMethodCache(String methodName, Class<?> returnType) {
+        this.methodName = methodName;
+        this.returnType = returnType;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the handle taking the target as Object and returning Object, null if the class does not have the method
+     */
+    @Override
+    protected MethodHandle computeValue(Class<?> type) {
+        Method method = getAccessibleMethod(type, methodName, new Class<?>[0]);
+        if (method == null || (returnType != null && !returnType.isAssignableFrom(method.getReturnType()))) {
+            return null;
+        }
+        try {
+            return MethodHandles.publicLookup().unreflect(method).asType(GENERIC_TYPE);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param target       the object to invoke the method on
+     * @param defaultValue the value returned if the class does not have the method or the method failed
+     * @return the method result
+     */
+    Object invoke(Object target, Object defaultValue) {
+        MethodHandle handle = get(target.getClass());
+        if (handle == null) {
+            return defaultValue;
+        }
+        try {
+            return handle.invokeExact(target);
+        } catch (Throwable e) {
+            return defaultValue;
+        }
+    }
+}
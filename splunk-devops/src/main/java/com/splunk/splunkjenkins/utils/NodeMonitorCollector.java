@@ -0,0 +1,144 @@
+package com.splunk.splunkjenkins.utils;
+
+import hudson.model.Computer;
+import hudson.node_monitors.NodeMonitor;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.splunk.splunkjenkins.Constants.EVENT_CAUSED_BY;
+import static com.splunk.splunkjenkins.Constants.NODE_NAME;
+import static com.splunk.splunkjenkins.Constants.SLAVE_TAG_NAME;
+import static com.splunk.splunkjenkins.Constants.TAG;
+
+/**
+ * Collects the status and node monitor data of computers on a bounded pool, so one slow monitor or agent
+ * does not stall the others. The data of a computer which is not collected within the timeout
+ * is returned as is with timed_out=true.
+ */
+class NodeMonitorCollector {
+    private static final Logger LOG = Logger.getLogger(NodeMonitorCollector.class.getName());
+    private static final int THREADS = Math.max(1, Integer.getInteger(NodeMonitorCollector.class.getName() + ".threads", 8));
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(Math.max(1, Long.getLong(NodeMonitorCollector.class.getName() + ".timeoutSeconds", 30)));
+    private static final ThreadPoolExecutor executor;
+
+    static {
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "splunkins-node-monitor"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private NodeMonitorCollector() {
+    }
+
+    /**
+     * @param computers the computers
+     * @param monitors  the node monitors
+     * @return the status keyed by node name
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static Map<String, Map<String, Object>> collect(Computer[] computers, final Collection<NodeMonitor> monitors) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        // a computer waits at most the timeout once it is started, queued ones are bounded by the rounds of the pool
+        long deadline = start + TIMEOUT * Math.max(1, (computers.length + THREADS - 1) / THREADS);
+        List<CollectTask> tasks = new ArrayList<>(computers.length);
+        for (Computer computer : computers) {
+            CollectTask task = new CollectTask(computer, monitors);
+            task.future = executor.submit(task);
+            tasks.add(task);
+        }
+        Map<String, Map<String, Object>> slaveStatusMap = new HashMap<>();
+        for (CollectTask task : tasks) {
+            try {
+                waitFor(task, deadline);
+            } catch (TimeoutException e) {
+                task.future.cancel(true);
+                task.timedOut = true;
+                LOG.log(Level.WARNING, "collecting node monitor data of {0} timed out", task.nodeName);
+            } catch (ExecutionException e) {
+                LOG.log(Level.WARNING, "failed to collect node monitor data of " + task.nodeName, e.getCause());
+            }
+            slaveStatusMap.put(task.nodeName, task.getResult());
+        }
+        return slaveStatusMap;
+    }
+
+    private static void waitFor(CollectTask task, long deadline) throws InterruptedException, ExecutionException, TimeoutException {
+        while (true) {
+            long now = System.currentTimeMillis();
+            long started = task.startTime;
+            long until = started == 0 ? deadline : Math.min(deadline, started + TIMEOUT);
+            if (until <= now) {
+                if (task.future.isDone()) {
+                    task.future.get();
+                    return;
+                }
+                throw new TimeoutException();
+            }
+            try {
+                task.future.get(until - now, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                // the task may have been started while waiting, check again with its own timeout
+            }
+        }
+    }
+
+    private static class CollectTask implements Runnable {
+        final Computer computer;
+        final Collection<NodeMonitor> monitors;
+        final String nodeName;
+        final Map<String, Object> slaveInfo = Collections.synchronizedMap(new HashMap<String, Object>());
+        volatile long startTime;
+        volatile boolean timedOut;
+        Future<?> future;
+
+        CollectTask(Computer computer, Collection<NodeMonitor> monitors) {
+            this.computer = computer;
+            this.monitors = monitors;
+            this.nodeName = LogEventHelper.getNodeName(computer);
+            // set before the task runs, so the event of a computer which timed out can be searched as the others
+            slaveInfo.put(TAG, SLAVE_TAG_NAME);
+            slaveInfo.put("status", "updated");
+            slaveInfo.put(EVENT_CAUSED_BY, "monitor");
+            slaveInfo.put(NODE_NAME, nodeName);
+        }
+
+        @Override
+        public void run() {
+            startTime = System.currentTimeMillis();
+            slaveInfo.putAll(LogEventHelper.getComputerStatus(computer));
+            for (NodeMonitor monitor : monitors) {
+                if (timedOut) {
+                    return;
+                }
+                slaveInfo.putAll(LogEventHelper.getMonitorData(computer, monitor));
+            }
+        }
+
+        Map<String, Object> getResult() {
+            Map<String, Object> result;
+            synchronized (slaveInfo) {
+                result = new HashMap<>(slaveInfo);
+            }
+            if (timedOut) {
+                result.put("timed_out", true);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.splunk.splunkjenkins.utils;
+
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.splunk.splunkjenkins.model.EventType.SLAVE_INFO;
+
+/**
+ * Coalesces the agent status updates requested by build started and completed events.
+ * The first request of a node is sent right away and opens a window of windowMillis, the requests of the same
+ * node within the window are dropped and one update is sent when the window ends, so the last state is not lost
+ * and a busy agent sends at most one status event per window.
+ * Updates run on a daemon thread of the plugin instead of the remoting pool.
+ */
+public class NodeStatusDebouncer {
+    private static final Logger LOG = Logger.getLogger(NodeStatusDebouncer.class.getName());
+    private static final long WINDOW_MILLIS = Math.max(0, Long.getLong(NodeStatusDebouncer.class.getName() + ".windowMillis", 5000));
+    private static final NodeStatusDebouncer INSTANCE = new NodeStatusDebouncer(WINDOW_MILLIS);
+    private final long windowMillis;
+    // nodes with an open window, true if a request was dropped in the window
+    private final ConcurrentHashMap<String, Boolean> windows = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final ScheduledThreadPoolExecutor executor;
+
+    NodeStatusDebouncer(long windowMillis) {
+        this.windowMillis = windowMillis;
+        executor = new ScheduledThreadPoolExecutor(1, new NamingThreadFactory(new DaemonThreadFactory(), "splunkins-node-status"));
+    }
+
+    /**
+     * @return the debouncer shared by run listeners
+     */
+    public static NodeStatusDebouncer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Requests a status update of the node, it is sent right away unless the window of the node is open
+     *
+     * @param nodeName the node name
+     */
+    public void request(final String nodeName) {
+        if (nodeName == null) {
+            return;
+        }
+        while (true) {
+            Boolean dropped = windows.putIfAbsent(nodeName, Boolean.FALSE);
+            if (dropped == null) {
+                send(nodeName);
+                return;
+            }
+            if (dropped || windows.replace(nodeName, Boolean.FALSE, Boolean.TRUE)) {
+                coalescedCount.incrementAndGet();
+                return;
+            }
+            // the window was closed concurrently, try again
+        }
+    }
+
+    /**
+     * Sends the status now and closes the window of the node after windowMillis
+     */
+    private void send(final String nodeName) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sendStatus(nodeName);
+                } catch (Throwable e) {
+                    LOG.log(Level.WARNING, "failed to send status of node " + nodeName, e);
+                }
+            }
+        });
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (windows.remove(nodeName, Boolean.FALSE)) {
+                    return;
+                }
+                // requests were dropped in the window, send the later state and open another window
+                windows.replace(nodeName, Boolean.TRUE, Boolean.FALSE);
+                send(nodeName);
+            }
+        }, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of requests dropped because the window of the same node was open
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Sends the status of the node
+     *
+     * @param nodeName the node name
+     */
+    protected void sendStatus(String nodeName) {
+        Node node = Jenkins.getInstance().getNode(nodeName);
+        if (node == null) {
+            return;
+        }
+        Computer computer = node.toComputer();
+        if (computer != null) {
+            Map event = LogEventHelper.getComputerStatus(computer);
+            if (!event.isEmpty()) {
+                SplunkLogService.getInstance().send(event, SLAVE_INFO);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.splunk.splunkjenkins.utils;
+
+import com.splunk.splunkjenkins.Constants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+import static com.splunk.splunkjenkins.model.EventType.QUEUE_INFO;
+
+/**
+ * Accumulates the queue phase durations per label and phase between two flushes, and sends them as one summary event.
+ * Used instead of one event per queue phase transition when aggregation is enabled,
+ * the counters are {@link LongAdder}s so the queue threads do not contend on a lock.
+ */
+public class QueuePhaseAggregator {
+    private static final boolean ENABLED = Boolean.getBoolean(QueuePhaseAggregator.class.getName() + ".enabled");
+    // phases which take longer are still sent as individual events
+    private static final float OUTLIER_SECONDS = Float.parseFloat(System.getProperty(QueuePhaseAggregator.class.getName() + ".outlierSeconds", "300"));
+    private static final int MAX_LABELS = Integer.getInteger(QueuePhaseAggregator.class.getName() + ".maxLabels", 500);
+    private static final String OTHER_LABEL = "(other)";
+    // upper bounds of the histogram buckets in seconds, the last bucket is unbounded
+    private static final long[] BUCKETS = {1, 5, 10, 30, 60, 300, 900, 3600};
+    private static final QueuePhaseAggregator INSTANCE = new QueuePhaseAggregator();
+    private final ConcurrentHashMap<String, PhaseStats> stats = new ConcurrentHashMap<>();
+    private volatile long intervalStart = System.currentTimeMillis();
+
+    QueuePhaseAggregator() {
+    }
+
+    /**
+     * @return the aggregator shared by queue listeners
+     */
+    public static QueuePhaseAggregator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if queue phases are aggregated
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @param duration the phase duration in seconds
+     * @return true if the phase should be sent as an individual event
+     */
+    public static boolean isOutlier(float duration) {
+        return duration >= OUTLIER_SECONDS;
+    }
+
+    private PhaseStats getStats(String label, String phase) {
+        String key = label + "\t" + phase;
+        PhaseStats phaseStats = stats.get(key);
+        if (phaseStats == null) {
+            if (stats.size() >= MAX_LABELS * 4 && !OTHER_LABEL.equals(label)) {
+                return getStats(OTHER_LABEL, phase);
+            }
+            phaseStats = new PhaseStats(label, phase);
+            PhaseStats previous = stats.putIfAbsent(key, phaseStats);
+            if (previous != null) {
+                phaseStats = previous;
+            }
+        }
+        return phaseStats;
+    }
+
+    /**
+     * @param label the assigned label of the queue item
+     * @param phase the phase entered
+     */
+    public void entered(String label, String phase) {
+        getStats(label, phase).entered.increment();
+    }
+
+    /**
+     * @param label    the assigned label of the queue item
+     * @param phase    the phase left
+     * @param duration seconds spent in the phase
+     */
+    public void left(String label, String phase, float duration) {
+        getStats(label, phase).record(duration);
+    }
+
+    /**
+     * @return the counters accumulated since last flush, and resets them
+     */
+    public Map<String, Object> flush() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> phases = new ArrayList<>();
+        for (PhaseStats phaseStats : stats.values()) {
+            Map<String, Object> summary = phaseStats.sumThenReset();
+            if (summary != null) {
+                phases.add(summary);
+            }
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put(Constants.TAG, Constants.QUEUE_TAG_NAME);
+        event.put("type", "phase_summary");
+        event.put("interval", (now - intervalStart) / 1000f);
+        event.put("phases", phases);
+        intervalStart = now;
+        return event;
+    }
+
+    /**
+     * Sends the summary event if any phase was entered or left since last flush
+     */
+    public void send() {
+        Map<String, Object> event = flush();
+        if (!((List) event.get("phases")).isEmpty()) {
+            SplunkLogService.getInstance().send(event, QUEUE_INFO);
+        }
+    }
+
+    private static class PhaseStats {
+        final String label;
+        final String phase;
+        final LongAdder entered = new LongAdder();
+        final LongAdder count = new LongAdder();
+        // in milliseconds
+        final LongAdder total = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(new LongBinaryOperator() {
+            @Override
+            public long applyAsLong(long left, long right) {
+                return Math.max(left, right);
+            }
+        }, 0);
+        final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+
+        PhaseStats(String label, String phase) {
+            this.label = label;
+            this.phase = phase;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(float duration) {
+            long millis = (long) (duration * 1000);
+            count.increment();
+            total.add(millis);
+            max.accumulate(millis);
+            int i = 0;
+            while (i < BUCKETS.length && duration > BUCKETS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+        }
+
+        Map<String, Object> sumThenReset() {
+            long enteredCount = entered.sumThenReset();
+            long leftCount = count.sumThenReset();
+            if (enteredCount == 0 && leftCount == 0) {
+                return null;
+            }
+            Map<String, Object> summary = new HashMap<>();
+            summary.put("label", label);
+            summary.put("phase", phase);
+            summary.put("entered", enteredCount);
+            summary.put("left", leftCount);
+            summary.put("total_time", total.sumThenReset() / 1000f);
+            summary.put("max_time", max.getThenReset() / 1000f);
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < buckets.length; i++) {
+                histogram.put(i < BUCKETS.length ? "le_" + BUCKETS[i] : "gt_" + BUCKETS[BUCKETS.length - 1], buckets[i].sumThenReset());
+            }
+            summary.put("histogram", histogram);
+            return summary;
+        }
+    }
+}
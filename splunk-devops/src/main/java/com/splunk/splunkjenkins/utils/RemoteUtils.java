@@ -1,15 +1,31 @@
 package com.splunk.splunkjenkins.utils;
 
 import com.splunk.splunkjenkins.SplunkJenkinsInstallation;
+import hudson.remoting.Channel;
 import hudson.util.Secret;
+import jenkins.util.JenkinsJVM;
 import org.apache.commons.beanutils.BeanUtils;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Utilities for initializing Splunk configuration on remote agents.
  */
 public class RemoteUtils {
+    private static final Logger LOG = Logger.getLogger(RemoteUtils.class.getName());
+    private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toMillis(Long.getLong(RemoteUtils.class.getName() + ".drainTimeout", 30));
+    private static final List<Runnable> agentFlushTasks = new CopyOnWriteArrayList<>();
+    private static final Set<Channel> watchedChannels = Collections.newSetFromMap(new WeakHashMap<Channel, Boolean>());
+    private static boolean shutdownHookAdded = false;
 
     /**
      * Initializes Splunk configuration on agent using configuration properties map
@@ -38,7 +54,61 @@ public class RemoteUtils {
      */
     public static void initSplunkConfigOnAgent(SplunkJenkinsInstallation instance) {
         SplunkJenkinsInstallation.initOnAgent(instance);
-        // only use one thread on agent
-        SplunkLogService.getInstance().MAX_WORKER_COUNT = 1;
+        if (!JenkinsJVM.isJenkinsJVM()) {
+            drainOnAgentShutdown(Channel.current());
+        }
+    }
+
+    /**
+     * Registers a task which sends the records buffered on agent, it is invoked before the
+     * agent queue is drained when the remoting channel is closed or the agent jvm exits
+     *
+     * @param flushTask the task to flush buffered records
+     */
+    public static void addAgentFlushTask(Runnable flushTask) {
+        if (!agentFlushTasks.contains(flushTask)) {
+            agentFlushTasks.add(flushTask);
+        }
+    }
+
+    private static synchronized void drainOnAgentShutdown(Channel channel) {
+        if (!shutdownHookAdded) {
+            Runtime.getRuntime().addShutdownHook(new Thread("splunkins-agent-shutdown") {
+                @Override
+                public void run() {
+                    flushAndDrain();
+                }
+            });
+            shutdownHookAdded = true;
+        }
+        if (channel != null && watchedChannels.add(channel)) {
+            channel.addListener(new Channel.Listener() {
+                @Override
+                public void onClosed(Channel channel, IOException cause) {
+                    // the drain may take up to drainTimeout, do not hold the thread closing the channel
+                    new Thread("splunkins-agent-drain") {
+                        @Override
+                        public void run() {
+                            flushAndDrain();
+                        }
+                    }.start();
+                }
+            });
+        }
+    }
+
+    private static void flushAndDrain() {
+        for (Runnable flushTask : agentFlushTasks) {
+            try {
+                flushTask.run();
+            } catch (Throwable ex) {
+                LOG.log(Level.WARNING, "failed to flush records on agent", ex);
+            }
+        }
+        try {
+            SplunkLogService.getInstance().drain(DRAIN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
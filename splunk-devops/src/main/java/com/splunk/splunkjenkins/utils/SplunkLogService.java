@@ -25,6 +25,8 @@ import shaded.splk.org.apache.http.protocol.HttpContext;
 import shaded.splk.org.apache.http.ssl.SSLContexts;
 
 import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.IOException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -33,6 +35,7 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -54,6 +57,12 @@ public class SplunkLogService {
     private final static int QUEUE_SIZE = Integer.getInteger(SplunkLogService.class.getName() + ".queueSize", 1 << 17);
     private final static long KEEP_ALIVE_TIME_MINUTES = 2;
     int MAX_WORKER_COUNT = Integer.getInteger(SplunkLogService.class.getName() + ".workerCount", 2);
+    // max bytes of string and byte array payloads held by the queue
+    private final static long MAX_QUEUED_BYTES = Long.getLong(SplunkLogService.class.getName() + ".maxQueuedBytes", 64L << 20);
+    // byte array payloads larger than this are spilled to disk instead of exceeding MAX_QUEUED_BYTES
+    private final static long SPILL_THRESHOLD = Long.getLong(SplunkLogService.class.getName() + ".spillThreshold", 256L << 10);
+    private final static File SPILL_DIR = new File(System.getProperty(SplunkLogService.class.getName() + ".spillDir",
+            System.getProperty("java.io.tmpdir")), "splunkins-spill");
     BlockingQueue<EventRecord> logQueue;
     List<LogConsumer> workers;
     HttpClient client;
@@ -61,6 +70,10 @@ public class SplunkLogService {
     private AtomicLong incomingCounter = new AtomicLong();
     private AtomicLong outgoingCounter = new AtomicLong();
     private Lock maintenanceLock = new ReentrantLock();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    // records queued or being sent, a record retried by a worker is queued again before the sent one is finished
+    private final AtomicInteger pendingRecords = new AtomicInteger();
+    private final Object capacityLock = new Object();
 
     private SplunkLogService() {
         this.logQueue = new LinkedBlockingQueue<EventRecord>(QUEUE_SIZE);
@@ -245,10 +258,21 @@ public class SplunkLogService {
             LOG.log(Level.FINE, "config invalid or eventType {0} is disabled, can not send {1}", new String[]{record.getEventType().toString(), record.getShortDescription()});
             return false;
         }
-        boolean added = logQueue.offer(record);
+        long payloadSize = record.getPayloadSize();
+        if (payloadSize > SPILL_THRESHOLD && queuedBytes.get() + payloadSize > MAX_QUEUED_BYTES) {
+            try {
+                record.spill(SPILL_DIR);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "failed to spill " + record.getShortDescription(), e);
+            }
+        }
+        boolean added = offer(record);
         if (!added) {
             added = maintainQueue(record);
         }
+        if (!added) {
+            record.release();
+        }
         if (workers.size() < MAX_WORKER_COUNT) {
             synchronized (workers) {
                 int worksToCreate = MAX_WORKER_COUNT - workers.size();
@@ -284,7 +308,7 @@ public class SplunkLogService {
             removeDeadWorker();
             if (logQueue.remainingCapacity() > 2000) {
                 //logQueue was already cleaned up
-                added = logQueue.offer(record);
+                added = offer(record);
             }
             if (!added) {
                 //the event in the queue may have format issue and caused congestion, remove raw events
@@ -293,16 +317,15 @@ public class SplunkLogService {
                 LOG.log(Level.SEVERE, "jenkins is too busy or has too few workers, clearing up queue");
                 int count = 0;
                 for (EventRecord queuedRecord : stuckRecords) {
-                    if (queuedRecord.getEventType().ordinal() > EventType.JENKINS_CONFIG.ordinal()) {
+                    dequeued(queuedRecord);
+                    finished(queuedRecord);
+                    if (queuedRecord.getEventType().ordinal() > EventType.JENKINS_CONFIG.ordinal() || !offer(queuedRecord)) {
                         count++;
-                        continue;
-                    }
-                    if (!logQueue.offer(queuedRecord)) {
-                        break;
+                        queuedRecord.release();
                     }
                 }
                 stuckRecords.clear();
-                added = logQueue.offer(record);
+                added = offer(record);
                 LOG.log(Level.INFO, "discarded: {0}, remaining: {1}", new Object[]{count, logQueue.size()});
             }
         } finally {
@@ -311,6 +334,71 @@ public class SplunkLogService {
         return added;
     }
 
+    private boolean offer(EventRecord record) {
+        // counted before offer, the record may be taken by a worker right after it is queued
+        queuedBytes.addAndGet(record.getPayloadSize());
+        pendingRecords.incrementAndGet();
+        if (logQueue.offer(record)) {
+            return true;
+        }
+        dequeued(record);
+        finished(record);
+        return false;
+    }
+
+    /**
+     * Invoked once a record is taken from the queue, its payload is no longer counted in the queued bytes
+     *
+     * @param record the record taken from the queue
+     */
+    void dequeued(EventRecord record) {
+        long payloadSize = record.getPayloadSize();
+        if (payloadSize > 0 && queuedBytes.addAndGet(-payloadSize) <= MAX_QUEUED_BYTES) {
+            synchronized (capacityLock) {
+                capacityLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Invoked once a worker is done with a record taken from the queue, whether it was sent, discarded or queued again
+     *
+     * @param record the record taken from the queue
+     */
+    void finished(EventRecord record) {
+        pendingRecords.decrementAndGet();
+    }
+
+    /**
+     * Waits until the queue has room for the payload, producers of large payloads call it to back off
+     * instead of piling up memory
+     *
+     * @param payloadSize   the size of the payload to be queued
+     * @param timeoutMillis max milliseconds to wait
+     * @return true if the queue has room, false if timeout, the payload is spilled to disk if it is large
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitCapacity(long payloadSize, long timeoutMillis) throws InterruptedException {
+        long expireTime = System.currentTimeMillis() + timeoutMillis;
+        synchronized (capacityLock) {
+            while (queuedBytes.get() + payloadSize > MAX_QUEUED_BYTES && queuedBytes.get() > 0) {
+                long remaining = expireTime - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                capacityLock.wait(Math.min(remaining, 1000));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return bytes of string and byte array payloads held by the queue
+     */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
     private void removeDeadWorker() {
         //check if sending LogConsumer thread alive
         Iterator<LogConsumer> workerIterator = workers.iterator();
@@ -333,11 +421,57 @@ public class SplunkLogService {
         }
         long queueLength = this.getQueueSize();
         if (queueLength > 0) {
-            logQueue.clear();
+            List<EventRecord> remaining = new ArrayList<>(logQueue.size());
+            logQueue.drainTo(remaining);
+            for (EventRecord record : remaining) {
+                dequeued(record);
+                finished(record);
+                record.release();
+            }
             LOG.severe("remaining " + queueLength + " record(s) not sent");
         }
     }
 
+    /**
+     * Waits until the queued records and the in flight requests are sent, workers are kept running
+     *
+     * @param timeoutMillis max milliseconds to wait
+     * @return true if the queue was drained before timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean drain(long timeoutMillis) throws InterruptedException {
+        long expireTime = System.currentTimeMillis() + timeoutMillis;
+        while (!isIdle()) {
+            if (System.currentTimeMillis() >= expireTime) {
+                LOG.log(Level.WARNING, "drain timeout, " + getStats());
+                return false;
+            }
+            Thread.sleep(100);
+        }
+        return true;
+    }
+
+    private boolean isIdle() {
+        // counted from enqueue to the end of the request, there is no gap between taking a record and sending it
+        return pendingRecords.get() <= 0;
+    }
+
+    /**
+     * Waits for the queued records and in flight requests, then stops the workers and releases the connections.
+     * Records still queued after the timeout are discarded.
+     *
+     * @param timeoutMillis max milliseconds to wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        try {
+            drain(timeoutMillis);
+        } finally {
+            stopWorker();
+            releaseConnection();
+        }
+    }
+
     /**
      * <p>releaseConnection.</p>
      */
@@ -397,7 +531,8 @@ public class SplunkLogService {
     public String getStats() {
         StringBuilder sbr = new StringBuilder();
         sbr.append("remaining:").append(this.getQueueSize()).append(" ")
-                .append("sent:").append(this.getSentCount());
+                .append("sent:").append(this.getSentCount()).append(" ")
+                .append("queued_bytes:").append(this.getQueuedBytes());
         return sbr.toString();
     }
 
@@ -0,0 +1,198 @@
+package com.splunk.splunkjenkins.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Line based unified diff, used to send only the changed lines of a config file.
+ * The edit script is computed with Myers' algorithm, which is linear for the few edits of a typical config change.
+ * The computation gives up once more than maxEdits lines are inserted or deleted, the caller sends the full text instead.
+ */
+public class UnifiedDiff {
+    private static final char EQUAL = ' ';
+    private static final char DELETE = '-';
+    private static final char INSERT = '+';
+
+    private UnifiedDiff() {
+    }
+
+    /**
+     * @param text the text
+     * @return the lines without line terminators
+     */
+    public static List<String> lines(String text) {
+        if (text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> lines = Arrays.asList(text.split("\r?\n", -1));
+        // the terminator of the last line does not start another line
+        if (text.endsWith("\n")) {
+            return lines.subList(0, lines.size() - 1);
+        }
+        return lines;
+    }
+
+    /**
+     * @param fromName the name of the original text in the header
+     * @param toName   the name of the revised text in the header
+     * @param original the original lines
+     * @param revised  the revised lines
+     * @param context  number of unchanged lines around each change
+     * @param maxEdits max number of inserted and deleted lines
+     * @return the unified diff, empty if the lines are equal, or null if there are more than maxEdits edits
+     */
+    public static String diff(String fromName, String toName, List<String> original, List<String> revised,
+                              int context, int maxEdits) {
+        List<Edit> edits = editScript(original, revised, maxEdits);
+        if (edits == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        int changeIndex = nextChange(edits, 0);
+        if (changeIndex < 0) {
+            return "";
+        }
+        sb.append("--- ").append(fromName).append('\n');
+        sb.append("+++ ").append(toName).append('\n');
+        while (changeIndex >= 0) {
+            int start = Math.max(0, changeIndex - context);
+            int end = changeIndex;
+            // extend the hunk while the gap to the next change is covered by the context of both
+            int next;
+            while (true) {
+                while (end + 1 < edits.size() && edits.get(end + 1).type != EQUAL) {
+                    end++;
+                }
+                next = nextChange(edits, end + 1);
+                if (next < 0 || next - end - 1 > 2 * context) {
+                    break;
+                }
+                end = next;
+            }
+            end = Math.min(edits.size() - 1, end + context);
+            appendHunk(sb, edits, start, end);
+            changeIndex = next;
+        }
+        return sb.toString();
+    }
+
+    private static int nextChange(List<Edit> edits, int from) {
+        for (int i = from; i < edits.size(); i++) {
+            if (edits.get(i).type != EQUAL) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void appendHunk(StringBuilder sb, List<Edit> edits, int start, int end) {
+        Edit first = edits.get(start);
+        int originalCount = 0;
+        int revisedCount = 0;
+        for (int i = start; i <= end; i++) {
+            char type = edits.get(i).type;
+            if (type != INSERT) {
+                originalCount++;
+            }
+            if (type != DELETE) {
+                revisedCount++;
+            }
+        }
+        // line numbers are 1-based, an empty range refers to the line before it
+        sb.append("@@ -").append(first.originalLine + (originalCount > 0 ? 1 : 0)).append(',').append(originalCount)
+                .append(" +").append(first.revisedLine + (revisedCount > 0 ? 1 : 0)).append(',').append(revisedCount)
+                .append(" @@\n");
+        for (int i = start; i <= end; i++) {
+            Edit edit = edits.get(i);
+            sb.append(edit.type).append(edit.text).append('\n');
+        }
+    }
+
+    /**
+     * @return the edits in order, or null if there are more than maxEdits edits
+     */
+    private static List<Edit> editScript(List<String> original, List<String> revised, int maxEdits) {
+        int n = original.size();
+        int m = revised.size();
+        int max = Math.min(n + m, Math.max(0, maxEdits));
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        // v before each step, to walk the path back
+        List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= max; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && original.get(x).equals(revised.get(y))) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(original, revised, trace, offset);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<Edit> backtrack(List<String> original, List<String> revised, List<int[]> trace, int offset) {
+        List<Edit> edits = new ArrayList<>();
+        int x = original.size();
+        int y = revised.size();
+        for (int d = trace.size() - 1; d > 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            int prevK;
+            if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            int prevX = v[offset + prevK];
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+                edits.add(new Edit(EQUAL, original.get(x), x, y));
+            }
+            if (x == prevX) {
+                y--;
+                edits.add(new Edit(INSERT, revised.get(y), x, y));
+            } else {
+                x--;
+                edits.add(new Edit(DELETE, original.get(x), x, y));
+            }
+        }
+        while (x > 0 && y > 0) {
+            x--;
+            y--;
+            edits.add(new Edit(EQUAL, original.get(x), x, y));
+        }
+        Collections.reverse(edits);
+        return edits;
+    }
+
+    private static class Edit {
+        final char type;
+        final String text;
+        // number of original and revised lines before this one
+        final int originalLine;
+        final int revisedLine;
+
+        Edit(char type, String text, int originalLine, int revisedLine) {
+            this.type = type;
+            this.text = text;
+            this.originalLine = originalLine;
+            this.revisedLine = revisedLine;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.splunk.splunkjenkins;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -109,4 +110,19 @@ public class WebPostAccessLoggerTest {
         assertFalse("preConfigSubmit - no /configSubmit pattern",
                 WebPostAccessLogger.FILTER_PATTERN.matcher("/preConfigSubmit").find());
     }
+
+    // ==================== fast filter ====================
+
+    @Test
+    public void testActionTrieMatchesSameAsPattern() {
+        String[] paths = {"/job/test/configSubmit", "/manage/credentials/store/system/domain/_/createSubmit",
+                "/view/All/createSubmit", "/job/test/updateSubmit", "/script", "/manage/scriptText",
+                "/job/test/doDelete", "/configSubmittal", "/doDeleteAll", "/api/json", "/job/test/build",
+                "/job/test/1/console", "/credentials/store/system/domain/_/", "/myCreateSubmit", "/preConfigSubmit",
+                "", "/", "//script", "/scrip", "configSubmit", "/job/scr/script/x", "/job/doDel/doDelete"};
+        for (String path : paths) {
+            assertEquals(path, WebPostAccessLogger.FILTER_PATTERN.matcher(path).find(),
+                    WebPostAccessLogger.ACTION_TRIE.matches(path));
+        }
+    }
 }
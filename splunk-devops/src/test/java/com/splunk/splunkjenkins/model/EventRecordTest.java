@@ -0,0 +1,54 @@
+package com.splunk.splunkjenkins.model;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class EventRecordTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void spill() throws Exception {
+        byte[] content = "line1\nline2\n".getBytes(UTF_8);
+        EventRecord record = new EventRecord(content, EventType.FILE);
+        Assert.assertEquals(content.length, record.getPayloadSize());
+        File dir = new File(folder.getRoot(), "spill");
+        Assert.assertTrue(record.spill(dir));
+        Assert.assertEquals(0, record.getPayloadSize());
+        Assert.assertTrue(record.isBytes());
+        Assert.assertArrayEquals(content, record.getMessageBytes());
+        Assert.assertEquals("line1\nline2\n", record.getMessageString());
+        Assert.assertEquals(1, dir.list().length);
+        record.release();
+        Assert.assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void releaseOnce() {
+        final int[] failures = {0};
+        EventRecord record = new EventRecord("text", EventType.LOG);
+        record.setFailCallback(new Runnable() {
+            @Override
+            public void run() {
+                failures[0]++;
+            }
+        });
+        // released by the failed retry enqueue and then by the worker
+        record.release();
+        record.release();
+        Assert.assertEquals(1, failures[0]);
+    }
+
+    @Test
+    public void spillOnlyBytes() throws Exception {
+        EventRecord record = new EventRecord("text", EventType.LOG);
+        Assert.assertEquals(4, record.getPayloadSize());
+        Assert.assertFalse(record.spill(folder.getRoot()));
+    }
+}
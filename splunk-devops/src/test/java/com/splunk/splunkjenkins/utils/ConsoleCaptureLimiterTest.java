@@ -0,0 +1,106 @@
+package com.splunk.splunkjenkins.utils;
+
+import com.splunk.splunkjenkins.model.ConsoleCapturePolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class ConsoleCaptureLimiterTest {
+
+    private ConsoleCaptureLimiter limiter(String settings) {
+        List<ConsoleCapturePolicy> policies = ConsoleCapturePolicy.parse("job/noisy/ " + settings);
+        Assert.assertEquals(1, policies.size());
+        return new ConsoleCaptureLimiter(policies.get(0));
+    }
+
+    @Test
+    public void parse() {
+        List<ConsoleCapturePolicy> policies = ConsoleCapturePolicy.parse("# comment\n" +
+                "job/noisy/ lines_per_second=10,max_bytes=100 head=2 tail=3 sample=0.5\n\njob/other/");
+        Assert.assertEquals(2, policies.size());
+        ConsoleCapturePolicy policy = policies.get(0);
+        Assert.assertTrue(policy.matches("job/noisy/1/console"));
+        Assert.assertFalse(policy.matches("job/other/1/console"));
+        Assert.assertEquals(10, policy.getLinesPerSecond());
+        Assert.assertEquals(100, policy.getMaxBytes());
+        Assert.assertEquals(2, policy.getHeadLines());
+        Assert.assertEquals(3, policy.getTailLines());
+        Assert.assertEquals(0.5, policy.getSampleRatio(), 0.001);
+        Assert.assertEquals(1, policies.get(1).getSampleRatio(), 0.001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseInvalidSetting() {
+        ConsoleCapturePolicy.parse("job/noisy/ lines=10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseInvalidRatio() {
+        ConsoleCapturePolicy.parse("job/noisy/ sample=2");
+    }
+
+    @Test
+    public void sample() {
+        ConsoleCaptureLimiter limiter = limiter("sample=0.25");
+        int kept = 0;
+        for (int i = 0; i < 100; i++) {
+            if (limiter.accept("line" + i)) {
+                kept++;
+            }
+        }
+        Assert.assertEquals(25, kept);
+        Assert.assertEquals(75, limiter.getDroppedLines());
+    }
+
+    @Test
+    public void headAndMaxBytes() {
+        ConsoleCaptureLimiter limiter = limiter("head=3 max_bytes=10");
+        // head lines are kept even if they exceed max bytes
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(limiter.accept("0123456789"));
+        }
+        Assert.assertFalse(limiter.accept("a"));
+        Assert.assertEquals(1, limiter.getDroppedLines());
+    }
+
+    @Test
+    public void linesPerSecond() {
+        ConsoleCaptureLimiter limiter = limiter("lines_per_second=5");
+        int kept = 0;
+        for (int i = 0; i < 10; i++) {
+            if (limiter.accept("line" + i)) {
+                kept++;
+            }
+        }
+        // the loop may cross a one second window on a slow machine
+        Assert.assertTrue(kept >= 5 && kept < 10);
+    }
+
+    @Test
+    public void tailRetained() {
+        ConsoleCaptureLimiter limiter = limiter("max_bytes=1 tail=2");
+        Assert.assertTrue(limiter.isTailRetained());
+        Assert.assertTrue(limiter.accept("a"));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertFalse(limiter.accept("line" + i));
+        }
+        Assert.assertEquals(5, limiter.getDroppedLines());
+    }
+
+    @Test
+    public void sharedBudget() {
+        ConsoleCaptureLimiter build = limiter("head=3 max_bytes=15");
+        ConsoleCaptureLimiter step = new ConsoleCaptureLimiter(ConsoleCapturePolicy.parse("job/noisy/ head=3 max_bytes=15").get(0), build);
+        // the step takes the whole head of the build
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(step.accept("0123456789"));
+        }
+        Assert.assertFalse(step.accept("a"));
+        Assert.assertFalse(build.accept("a"));
+        step.finish("job/noisy/1/console");
+        Assert.assertEquals(0, step.getDroppedLines());
+        Assert.assertEquals(2, build.getDroppedLines());
+        Assert.assertFalse(build.accept("a"));
+    }
+}
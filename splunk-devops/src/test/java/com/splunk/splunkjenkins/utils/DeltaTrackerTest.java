@@ -0,0 +1,61 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DeltaTrackerTest {
+
+    private Map<String, Object> entity(String name, String status, long uptime) {
+        Map<String, Object> entity = new HashMap<>();
+        entity.put("name", name);
+        entity.put("status", status);
+        entity.put("uptime", uptime);
+        return entity;
+    }
+
+    @Test
+    public void update() {
+        DeltaTracker tracker = new DeltaTracker(3, "uptime");
+        Map<String, Map<String, Object>> entities = new HashMap<>();
+        entities.put("a", entity("a", "online", 1));
+        entities.put("b", entity("b", "online", 1));
+        List<Map<String, Object>> changed = tracker.update(entities);
+        Assert.assertEquals(2, changed.size());
+        Assert.assertEquals("full", changed.get(0).get(DeltaTracker.SNAPSHOT_FIELD));
+        // uptime is ignored
+        entities.put("a", entity("a", "online", 2));
+        entities.put("b", entity("b", "offline", 2));
+        changed = tracker.update(entities);
+        Assert.assertEquals(1, changed.size());
+        Assert.assertEquals("b", changed.get(0).get("name"));
+        Assert.assertEquals("delta", changed.get(0).get(DeltaTracker.SNAPSHOT_FIELD));
+        entities.remove("b");
+        Assert.assertTrue(tracker.update(entities).isEmpty());
+        Assert.assertEquals(Collections.singleton("b"), tracker.getRemoved());
+        // full snapshot every 3 cycles
+        Assert.assertEquals(1, tracker.update(entities).size());
+        Assert.assertTrue(tracker.getRemoved().isEmpty());
+    }
+
+    @Test
+    public void bucketedState() {
+        DeltaTracker tracker = new DeltaTracker(100) {
+            @Override
+            protected Object getState(String key, Object value) {
+                return "uptime".equals(key) ? (Long) value / 10 : value;
+            }
+        };
+        Map<String, Map<String, Object>> entities = new HashMap<>();
+        entities.put("a", entity("a", "online", 1));
+        Assert.assertEquals(1, tracker.update(entities).size());
+        entities.put("a", entity("a", "online", 9));
+        Assert.assertTrue(tracker.update(entities).isEmpty());
+        entities.put("a", entity("a", "online", 10));
+        Assert.assertEquals(1, tracker.update(entities).size());
+    }
+}
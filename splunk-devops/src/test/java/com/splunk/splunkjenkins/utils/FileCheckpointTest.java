@@ -0,0 +1,91 @@
+package com.splunk.splunkjenkins.utils;
+
+import com.splunk.splunkjenkins.model.EventRecord;
+import com.splunk.splunkjenkins.model.EventType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+public class FileCheckpointTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void acknowledgeInOrder() {
+        FileCheckpoint checkpoint = new FileCheckpoint("a.log");
+        checkpoint.setSize(30);
+        Runnable first = checkpoint.addChunk(10, "d10");
+        Runnable second = checkpoint.addChunk(20, "d20");
+        Runnable third = checkpoint.addChunk(30, "d30");
+        // acknowledged out of order, the offset only moves over the contiguous prefix
+        second.run();
+        Assert.assertEquals(0, checkpoint.getOffset());
+        Assert.assertNull(checkpoint.getDigest());
+        first.run();
+        Assert.assertEquals(20, checkpoint.getOffset());
+        Assert.assertEquals("d20", checkpoint.getDigest());
+        Assert.assertFalse(checkpoint.isAcknowledged());
+        Assert.assertFalse(checkpoint.isComplete());
+        third.run();
+        Assert.assertTrue(checkpoint.isAcknowledged());
+        Assert.assertTrue(checkpoint.isComplete());
+        Assert.assertEquals(3, checkpoint.getEventCount());
+    }
+
+    @Test
+    public void awaitInFlight() throws Exception {
+        FileCheckpoint checkpoint = new FileCheckpoint("a.log");
+        Runnable first = checkpoint.addChunk(10, "d10");
+        checkpoint.addChunk(20, "d20");
+        Assert.assertTrue(checkpoint.awaitInFlight(3, 0));
+        Assert.assertFalse(checkpoint.awaitInFlight(2, 10));
+        // acknowledged chunks no longer count
+        first.run();
+        Assert.assertTrue(checkpoint.awaitInFlight(2, 0));
+        checkpoint.fail();
+        Assert.assertFalse(checkpoint.awaitInFlight(2, 60000));
+    }
+
+    @Test
+    public void failOnRelease() throws Exception {
+        FileCheckpoint checkpoint = new FileCheckpoint("a.log");
+        checkpoint.setSize(20);
+        EventRecord sent = new EventRecord("first", EventType.FILE);
+        checkpoint.addChunk(sent, 10, "d10");
+        EventRecord dropped = new EventRecord("second", EventType.FILE);
+        checkpoint.addChunk(dropped, 20, "d20");
+        sent.acknowledge();
+        sent.release();
+        Assert.assertFalse(checkpoint.isFailed());
+        // released without acknowledgement, such as discarded after retries
+        dropped.release();
+        Assert.assertTrue(checkpoint.isFailed());
+        long start = System.currentTimeMillis();
+        Assert.assertFalse(checkpoint.awaitAcknowledged(60000));
+        Assert.assertTrue(System.currentTimeMillis() - start < 30000);
+        Assert.assertEquals(10, checkpoint.getOffset());
+        Assert.assertFalse(checkpoint.isComplete());
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        File buildDir = folder.newFolder();
+        FileCheckpoint sent = new FileCheckpoint("a.log");
+        sent.setSize(20);
+        sent.addChunk(10, "d10").run();
+        FileCheckpoint unsent = new FileCheckpoint("b.log");
+        unsent.addChunk(5, "d5");
+        FileCheckpoint.save(buildDir, Arrays.asList(sent, unsent));
+        Map<String, FileCheckpoint> loaded = FileCheckpoint.load(buildDir);
+        Assert.assertEquals(1, loaded.size());
+        FileCheckpoint checkpoint = loaded.get("a.log");
+        Assert.assertEquals(10, checkpoint.getOffset());
+        Assert.assertEquals("d10", checkpoint.getDigest());
+        Assert.assertFalse(checkpoint.isComplete());
+    }
+}
@@ -0,0 +1,58 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class FileScanCallableTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File newFile(String path, String content, long lastModified) throws Exception {
+        File file = new File(folder.getRoot(), path);
+        FileUtils.writeStringToFile(file, content, UTF_8);
+        Assert.assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    @Test
+    public void orderedByLastModified() throws Exception {
+        newFile("b.log", "b", 2000_000L);
+        newFile("a.log", "a", 3000_000L);
+        newFile("logs/c.log", "c", 1000_000L);
+        Assert.assertTrue(new File(folder.getRoot(), "dir.log").mkdir());
+        newFile("d.txt", "d", 1000_000L);
+        List<FileScanCallable.ScannedFile> files = new FileScanCallable("**/*.log", null, 0, false, 0)
+                .invoke(folder.getRoot(), null).getFiles();
+        Assert.assertEquals("[logs" + File.separator + "c.log, b.log, a.log]", files.toString());
+        Assert.assertEquals(1, files.get(0).getSize());
+    }
+
+    @Test
+    public void filtered() throws Exception {
+        newFile("old.log", "old", 1000_000L);
+        newFile("large.log", "large content", 3000_000L);
+        newFile("small.log", "small", 3000_000L);
+        FileScanCallable.Result result = new FileScanCallable("*.log", null, 5, true, 2000_000L)
+                .invoke(folder.getRoot(), null);
+        Assert.assertEquals("[small.log]", result.getFiles().toString());
+        Assert.assertEquals("[large.log]", result.getRejected().toString());
+        // truncated when sent
+        result = new FileScanCallable("*.log", null, 5, false, 2000_000L).invoke(folder.getRoot(), null);
+        Assert.assertEquals(2, result.getFiles().size());
+        Assert.assertTrue(result.getRejected().isEmpty());
+    }
+
+    @Test
+    public void missingWorkspace() throws Exception {
+        Assert.assertNull(new FileScanCallable("*.log", null, 0, false, 0)
+                .invoke(new File(folder.getRoot(), "missing"), null));
+    }
+}
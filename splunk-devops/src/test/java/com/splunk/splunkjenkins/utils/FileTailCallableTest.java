@@ -0,0 +1,80 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class FileTailCallableTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileTailCallable.Result tail(Map<String, FileTailCallable.TailOffset> offsets, boolean finalRead) throws Exception {
+        return new FileTailCallable("**/*.log", null, offsets, 1024, finalRead).invoke(folder.getRoot(), null);
+    }
+
+    private String content(FileTailCallable.Result result) {
+        Assert.assertEquals(1, result.getChunks().size());
+        return new String(result.getChunks().get(0).getContent(), UTF_8);
+    }
+
+    @Test
+    public void completeLinesOnly() throws Exception {
+        File file = folder.newFile("test.log");
+        FileUtils.writeStringToFile(file, "first\nsec", UTF_8);
+        FileTailCallable.Result result = tail(Collections.<String, FileTailCallable.TailOffset>emptyMap(), false);
+        Assert.assertEquals("first\n", content(result));
+        Assert.assertEquals("test.log", result.getChunks().get(0).getPath());
+        FileUtils.writeStringToFile(file, "ond\nthi", UTF_8, true);
+        result = tail(result.getOffsets(), false);
+        Assert.assertEquals("second\n", content(result));
+        // the final read returns the incomplete line
+        result = tail(result.getOffsets(), true);
+        Assert.assertEquals("thi", content(result));
+        Assert.assertTrue(tail(result.getOffsets(), true).getChunks().isEmpty());
+    }
+
+    @Test
+    public void truncated() throws Exception {
+        File file = folder.newFile("test.log");
+        FileUtils.writeStringToFile(file, "first line\n", UTF_8);
+        FileTailCallable.Result result = tail(Collections.<String, FileTailCallable.TailOffset>emptyMap(), false);
+        FileUtils.writeStringToFile(file, "new\n", UTF_8);
+        Assert.assertEquals("new\n", content(tail(result.getOffsets(), false)));
+    }
+
+    @Test
+    public void rotated() throws Exception {
+        File file = folder.newFile("test.log");
+        FileUtils.writeStringToFile(file, "old\n", UTF_8);
+        FileTailCallable.Result result = tail(Collections.<String, FileTailCallable.TailOffset>emptyMap(), false);
+        Assert.assertTrue(file.renameTo(new File(folder.getRoot(), "test.log.1")));
+        FileUtils.writeStringToFile(file, "rotated file\n", UTF_8);
+        result = tail(result.getOffsets(), false);
+        // the file key is not available on every file system, then the larger file is read from the old offset
+        String text = content(result);
+        Assert.assertTrue(text, "rotated file\n".equals(text) || "ted file\n".equals(text));
+    }
+
+    @Test
+    public void budgetSharedByFiles() throws Exception {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            large.append("line ").append(i).append('\n');
+        }
+        FileUtils.writeStringToFile(folder.newFile("a.log"), large.toString(), UTF_8);
+        FileUtils.writeStringToFile(folder.newFile("b.log"), "small\n", UTF_8);
+        FileTailCallable.Result result = tail(Collections.<String, FileTailCallable.TailOffset>emptyMap(), false);
+        Assert.assertTrue(result.hasMore());
+        Assert.assertEquals(2, result.getChunks().size());
+        Assert.assertEquals("b.log", result.getChunks().get(1).getPath());
+        Assert.assertTrue(result.getChunks().get(0).getContent().length <= 512);
+    }
+}
@@ -0,0 +1,47 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import shaded.splk.com.google.gson.JsonElement;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class JsonStreamSplitterTest {
+
+    private List<String> split(String content) throws IOException {
+        List<String> values = new ArrayList<>();
+        JsonStreamSplitter splitter = new JsonStreamSplitter(new StringReader(content));
+        JsonElement element;
+        while ((element = splitter.next()) != null) {
+            values.add(element.toString());
+        }
+        return values;
+    }
+
+    @Test
+    public void splitArray() throws Exception {
+        Assert.assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":[1,2]}", "3"),
+                split("[{\"a\":1},\n {\"b\":[1,2]}, 3]"));
+    }
+
+    @Test
+    public void splitNewlineDelimited() throws Exception {
+        Assert.assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":2.50}"), split("{\"a\":1}\n{\"b\":2.50}\n"));
+    }
+
+    @Test
+    public void empty() throws Exception {
+        Assert.assertTrue(split("").isEmpty());
+        Assert.assertTrue(split("[]").isEmpty());
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncated() throws Exception {
+        split("[{\"a\":1}, {\"b\":");
+    }
+}
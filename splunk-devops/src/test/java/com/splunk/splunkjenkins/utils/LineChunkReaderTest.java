@@ -0,0 +1,101 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class LineChunkReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File createFile(String content) throws Exception {
+        File file = folder.newFile();
+        FileUtils.writeStringToFile(file, content, UTF_8);
+        return file;
+    }
+
+    @Test
+    public void splitAtLineBreak() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        content.append("no line break at end");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int count = 0;
+        try (LineChunkReader chunkReader = new LineChunkReader(createFile(content.toString()), 32, 0)) {
+            byte[] chunk;
+            while ((chunk = chunkReader.next()) != null) {
+                count++;
+                String text = new String(chunk, UTF_8);
+                if (!text.endsWith("no line break at end")) {
+                    Assert.assertTrue("chunk ends with line break", text.endsWith("\n"));
+                    Assert.assertTrue("chunk is larger than chunk size", chunk.length > 32);
+                }
+                out.write(chunk);
+            }
+            Assert.assertFalse(chunkReader.isTruncated());
+        }
+        Assert.assertTrue(count > 1);
+        Assert.assertEquals(content.toString(), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void truncated() throws Exception {
+        try (LineChunkReader chunkReader = new LineChunkReader(createFile("first\nsecond\nthird\n"), 1024, 8)) {
+            Assert.assertEquals("first\nse", new String(chunkReader.next(), UTF_8));
+            Assert.assertNull(chunkReader.next());
+            Assert.assertTrue(chunkReader.isTruncated());
+        }
+    }
+
+    @Test
+    public void growingFileIsNotTruncated() throws Exception {
+        File file = createFile("first\n");
+        try (LineChunkReader chunkReader = new LineChunkReader(file, 1024, 0)) {
+            FileUtils.writeStringToFile(file, "second\n", UTF_8, true);
+            Assert.assertEquals("first\n", new String(chunkReader.next(), UTF_8));
+            Assert.assertNull(chunkReader.next());
+            Assert.assertFalse(chunkReader.isTruncated());
+        }
+    }
+
+    @Test
+    public void largerThanWindow() throws Exception {
+        StringBuilder content = new StringBuilder();
+        int i = 0;
+        while (content.length() < 10 << 20) {
+            content.append("line ").append(i++).append('\n');
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (LineChunkReader chunkReader = new LineChunkReader(createFile(content.toString()), 1 << 20, 0)) {
+            byte[] chunk;
+            while ((chunk = chunkReader.next()) != null) {
+                out.write(chunk);
+            }
+            // resume from a chunk boundary in the middle of the file
+            long middle = chunkReader.getLimit() / 2;
+            chunkReader.seek(middle);
+            ByteArrayOutputStream rest = new ByteArrayOutputStream();
+            while ((chunk = chunkReader.next()) != null) {
+                rest.write(chunk);
+            }
+            Assert.assertEquals(content.substring((int) middle), rest.toString("UTF-8"));
+        }
+        Assert.assertEquals(content.toString(), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void emptyFile() throws Exception {
+        try (LineChunkReader chunkReader = new LineChunkReader(createFile(""), 1024, 0)) {
+            Assert.assertNull(chunkReader.next());
+        }
+    }
+}
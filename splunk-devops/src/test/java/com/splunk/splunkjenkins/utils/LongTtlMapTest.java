@@ -0,0 +1,74 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongTtlMapTest {
+
+    @Test
+    public void putGetRemove() {
+        LongTtlMap map = new LongTtlMap(1000, 10000);
+        for (long key = 1; key <= 1000; key++) {
+            map.put(key, key * 10, 0);
+        }
+        Assert.assertEquals(1000, map.size());
+        for (long key = 1; key <= 1000; key += 2) {
+            Assert.assertEquals(key * 10, map.remove(key, -1));
+        }
+        Assert.assertEquals(500, map.size());
+        for (long key = 1; key <= 1000; key++) {
+            Assert.assertEquals(key % 2 == 0 ? key * 10 : -1, map.get(key, -1, 0));
+        }
+        Assert.assertEquals(-1, map.remove(1, -1));
+    }
+
+    @Test
+    public void expired() {
+        LongTtlMap map = new LongTtlMap(1000, 10000);
+        map.put(1, 1, 0);
+        map.put(2, 2, 500);
+        Assert.assertEquals(-1, map.get(1, -1, 1001));
+        Assert.assertEquals(2, map.get(2, -1, 1001));
+        Assert.assertEquals(1, map.getExpiredCount());
+        // expired entries are dropped before the table grows
+        for (long key = 100; key < 200; key++) {
+            map.put(key, key, 2000);
+        }
+        Assert.assertEquals(100, map.size());
+        Assert.assertEquals(2, map.getExpiredCount());
+    }
+
+    @Test
+    public void evictOldest() {
+        LongTtlMap map = new LongTtlMap(1000, 3);
+        map.put(1, 1, 10);
+        map.put(2, 2, 0);
+        map.put(3, 3, 20);
+        map.put(4, 4, 30);
+        Assert.assertEquals(3, map.size());
+        Assert.assertEquals(1, map.getEvictedCount());
+        Assert.assertEquals(-1, map.get(2, -1, 30));
+        Assert.assertEquals(1, map.get(1, -1, 30));
+        Assert.assertEquals(4, map.get(4, -1, 30));
+    }
+
+    @Test
+    public void evictInBatch() {
+        LongTtlMap map = new LongTtlMap(1000, 64);
+        for (long key = 0; key < 64; key++) {
+            map.put(key, key, key);
+        }
+        // a sixteenth of the entries is evicted, the following puts do not evict again
+        map.put(100, 100, 64);
+        Assert.assertEquals(61, map.size());
+        Assert.assertEquals(4, map.getEvictedCount());
+        for (long key = 101; key < 104; key++) {
+            map.put(key, key, 65);
+        }
+        Assert.assertEquals(64, map.size());
+        Assert.assertEquals(4, map.getEvictedCount());
+        Assert.assertEquals(-1, map.get(3, -1, 65));
+        Assert.assertEquals(4, map.get(4, -1, 65));
+        Assert.assertEquals(0, map.getExpiredCount());
+    }
+}
@@ -0,0 +1,35 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+public class MultiLineEventMergerTest {
+
+    @Test
+    public void stackTrace() {
+        String text = "starting\r\njava.lang.IllegalStateException: failed\n\tat Foo.bar(Foo.java:10)\n"
+                + "\tat Foo.main(Foo.java:5)\nCaused by: java.io.IOException\n\t... 2 more\n\nfinished\n";
+        MultiLineEventMerger merger = MultiLineEventMerger.getInstance();
+        Assert.assertEquals(Arrays.asList("starting",
+                "java.lang.IllegalStateException: failed\n\tat Foo.bar(Foo.java:10)\n\tat Foo.main(Foo.java:5)"
+                        + "\nCaused by: java.io.IOException\n\t... 2 more",
+                "finished"), merger.merge(text));
+    }
+
+    @Test
+    public void eventStartPattern() {
+        MultiLineEventMerger merger = new MultiLineEventMerger(Pattern.compile("\\d{4}-\\d{2}-\\d{2} "), null, 3);
+        String text = "2024-01-01 first\nmore\n2024-01-02 second\nline 2\nline 3\nline 4\n";
+        Assert.assertEquals(Arrays.asList("2024-01-01 first\nmore", "2024-01-02 second\nline 2\nline 3", "line 4"),
+                merger.merge(text));
+    }
+
+    @Test
+    public void disabled() {
+        MultiLineEventMerger merger = new MultiLineEventMerger(null, null, 256);
+        Assert.assertEquals(Arrays.asList("a", "\tat b"), merger.merge("a\n\tat b"));
+    }
+}
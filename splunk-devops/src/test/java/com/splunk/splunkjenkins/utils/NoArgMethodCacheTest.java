@@ -0,0 +1,75 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NoArgMethodCacheTest {
+
+    public static class WithUptime {
+        public long getUptime() {
+            return 42;
+        }
+    }
+
+    public static class WithoutUptime {
+    }
+
+    public static class StringUptime {
+        public String getUptime() {
+            return "42";
+        }
+    }
+
+    public static class FailingUptime {
+        public long getUptime() {
+            throw new IllegalStateException("not connected");
+        }
+    }
+
+    private static class CountingCache extends NoArgMethodCache {
+        final AtomicInteger lookups = new AtomicInteger();
+
+        CountingCache() {
+            super("getUptime", long.class);
+        }
+
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            lookups.incrementAndGet();
+            return super.computeValue(type);
+        }
+    }
+
+    @Test
+    public void invoke() {
+        CountingCache cache = new CountingCache();
+        Assert.assertEquals(42L, cache.invoke(new WithUptime(), null));
+        Assert.assertEquals(42L, cache.invoke(new WithUptime(), null));
+        Assert.assertEquals(1, cache.lookups.get());
+    }
+
+    @Test
+    public void missingMethodIsCached() {
+        CountingCache cache = new CountingCache();
+        Assert.assertEquals("none", cache.invoke(new WithoutUptime(), "none"));
+        Assert.assertEquals("none", cache.invoke(new WithoutUptime(), "none"));
+        Assert.assertEquals(1, cache.lookups.get());
+    }
+
+    @Test
+    public void wrongReturnType() {
+        CountingCache cache = new CountingCache();
+        Assert.assertEquals("none", cache.invoke(new StringUptime(), "none"));
+        Assert.assertEquals("42", new NoArgMethodCache("getUptime", null).invoke(new StringUptime(), "none"));
+    }
+
+    @Test
+    public void methodThrows() {
+        CountingCache cache = new CountingCache();
+        Assert.assertEquals("none", cache.invoke(new FailingUptime(), "none"));
+        Assert.assertEquals(1, cache.lookups.get());
+    }
+}
@@ -0,0 +1,62 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class NodeStatusDebouncerTest {
+
+    private NodeStatusDebouncer debouncer(long windowMillis, final List<String> sent) {
+        return new NodeStatusDebouncer(windowMillis) {
+            @Override
+            protected void sendStatus(String nodeName) {
+                sent.add(nodeName);
+            }
+        };
+    }
+
+    private void waitForSize(List<String> sent, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sent.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void firstRequestIsNotDelayed() throws InterruptedException {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        NodeStatusDebouncer debouncer = debouncer(TimeUnit.MINUTES.toMillis(10), sent);
+        debouncer.request("agent-1");
+        debouncer.request("agent-1");
+        waitForSize(sent, 1);
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals(1, debouncer.getCoalescedCount());
+    }
+
+    @Test
+    public void request() throws InterruptedException {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        NodeStatusDebouncer debouncer = debouncer(200, sent);
+        for (int i = 0; i < 50; i++) {
+            debouncer.request("agent-1");
+        }
+        debouncer.request("agent-2");
+        debouncer.request(null);
+        // the first request of each node, then one update of agent-1 when its window ends
+        waitForSize(sent, 3);
+        Thread.sleep(500);
+        Assert.assertEquals(3, sent.size());
+        Assert.assertEquals(2, Collections.frequency(sent, "agent-1"));
+        Assert.assertEquals(1, Collections.frequency(sent, "agent-2"));
+        Assert.assertEquals(49, debouncer.getCoalescedCount());
+        // a request after the windows were closed is sent right away
+        debouncer.request("agent-1");
+        waitForSize(sent, 4);
+        Assert.assertEquals(4, sent.size());
+        Assert.assertEquals(49, debouncer.getCoalescedCount());
+    }
+}
@@ -0,0 +1,33 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class QueuePhaseAggregatorTest {
+
+    @Test
+    public void flush() {
+        QueuePhaseAggregator aggregator = new QueuePhaseAggregator();
+        aggregator.entered("linux", "blocked");
+        aggregator.left("linux", "blocked", 0.5f);
+        aggregator.left("linux", "blocked", 42f);
+        aggregator.left("linux", "blocked", 7200f);
+        List<Map<String, Object>> phases = (List<Map<String, Object>>) aggregator.flush().get("phases");
+        Assert.assertEquals(1, phases.size());
+        Map<String, Object> summary = phases.get(0);
+        Assert.assertEquals("linux", summary.get("label"));
+        Assert.assertEquals(1L, summary.get("entered"));
+        Assert.assertEquals(3L, summary.get("left"));
+        Assert.assertEquals(7200f, summary.get("max_time"));
+        Map<String, Long> histogram = (Map<String, Long>) summary.get("histogram");
+        Assert.assertEquals(1L, (long) histogram.get("le_1"));
+        Assert.assertEquals(1L, (long) histogram.get("le_60"));
+        Assert.assertEquals(1L, (long) histogram.get("gt_3600"));
+        Assert.assertEquals(0L, (long) histogram.get("le_5"));
+        // counters are reset
+        Assert.assertTrue(((List) aggregator.flush().get("phases")).isEmpty());
+    }
+}
@@ -0,0 +1,51 @@
+package com.splunk.splunkjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UnifiedDiffTest {
+
+    private List<String> numbered(int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            lines.add("line" + i);
+        }
+        return lines;
+    }
+
+    @Test
+    public void diff() {
+        List<String> original = numbered(20);
+        List<String> revised = numbered(20);
+        revised.set(2, "changed3");
+        revised.remove(15);
+        revised.add("line21");
+        String expected = "--- a\n+++ b\n" +
+                "@@ -1,6 +1,6 @@\n line1\n line2\n-line3\n+changed3\n line4\n line5\n line6\n" +
+                "@@ -13,8 +13,8 @@\n line13\n line14\n line15\n-line16\n line17\n line18\n line19\n line20\n+line21\n";
+        Assert.assertEquals(expected, UnifiedDiff.diff("a", "b", original, revised, 3, 100));
+    }
+
+    @Test
+    public void diffEmptyAndEqual() {
+        Assert.assertEquals("", UnifiedDiff.diff("a", "b", numbered(5), numbered(5), 3, 100));
+        Assert.assertEquals(numbered(2), UnifiedDiff.lines("line1\r\nline2\n"));
+        Assert.assertEquals("--- a\n+++ b\n@@ -0,0 +1,2 @@\n+line1\n+line2\n",
+                UnifiedDiff.diff("a", "b", UnifiedDiff.lines(""), numbered(2), 3, 100));
+        Assert.assertEquals("--- a\n+++ b\n@@ -1,2 +0,0 @@\n-line1\n-line2\n",
+                UnifiedDiff.diff("a", "b", numbered(2), new ArrayList<String>(), 3, 100));
+    }
+
+    @Test
+    public void maxEdits() {
+        List<String> revised = new ArrayList<>();
+        for (String line : numbered(10)) {
+            revised.add(line + "x");
+        }
+        Assert.assertNull(UnifiedDiff.diff("a", "b", numbered(10), revised, 3, 19));
+        Assert.assertNotNull(UnifiedDiff.diff("a", "b", numbered(10), revised, 3, 20));
+    }
+}